@@ -0,0 +1,89 @@
+package retromock.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import retrofit.client.Response;
+import retromock.parser.HttpParser;
+import retromock.parser.ResponseTemplate;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of {@linkplain HttpParser} by size of the fixture body and number of headers,
+ * for the byte, reader and file based parse paths and for rendering a compiled template.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpParserBenchmark {
+
+    private static final String URL = "http://localhost/";
+
+    @Param({"1024", "1048576"})
+    public int bodySize;
+
+    @Param({"5", "50"})
+    public int headerCount;
+
+    private byte[] fixture;
+    private Path file;
+    private ResponseTemplate template;
+
+    @Setup
+    public void setup() throws IOException {
+        StringBuilder head = new StringBuilder("HTTP/1.1 200 OK\n")
+                .append("Date: ${DATE}\n")
+                .append("Content-Type: application/json; charset=UTF-8\n")
+                .append("Content-Length: ${LENGTH}\n");
+        for (int i = 3; i < headerCount; i++) {
+            head.append("X-Header-").append(i).append(": value ").append(i).append('\n');
+        }
+        head.append('\n');
+        byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+        for (int i = 79; i < body.length; i += 80) {
+            body[i] = '\n';
+        }
+        fixture = Arrays.copyOf(headBytes, headBytes.length + body.length);
+        System.arraycopy(body, 0, fixture, headBytes.length, body.length);
+
+        file = Files.createTempFile("retromock-benchmark-", ".http");
+        Files.write(file, fixture);
+        template = HttpParser.compile(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Response parseBytes() {
+        return HttpParser.parse(URL, fixture);
+    }
+
+    @Benchmark
+    public Response parseReader() throws IOException {
+        return HttpParser.parse(URL, new InputStreamReader(new ByteArrayInputStream(fixture), StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public Response parseFile() throws IOException {
+        return HttpParser.parse(URL, file);
+    }
+
+    @Benchmark
+    public Response renderTemplate() {
+        return template.render(URL);
+    }
+}
@@ -0,0 +1,90 @@
+package retromock.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedString;
+import retromock.MockClient;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static retromock.matchers.IsRequestWithMethod.withMethod;
+import static retromock.matchers.IsRequestWithUrl.withPath;
+
+/**
+ * Dispatch throughput of {@linkplain MockClient#execute(Request)} by size of the route table and share of requests
+ * that match a route. {@code indexed} routes are declared with {@code GET(path)}, {@code opaque} routes with
+ * {@code matching(...)}, which cannot be indexed, {@code header} routes share a path and differ by a literal
+ * header value, and {@code regex} routes match the path with {@code withPathMatching}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MockClientBenchmark {
+
+    private static final int REQUESTS = 1024;
+
+    @Param({"10", "1000", "5000"})
+    public int routes;
+
+    @Param({"1.0", "0.5", "0.0"})
+    public double hitRatio;
+
+    @Param({"indexed", "opaque", "header", "regex"})
+    public String routeKind;
+
+    private MockClient client;
+    private Request[] requests;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup
+    public void setup() {
+        Response response = new Response("", 200, "OK", Collections.<Header>emptyList(), new TypedString("ok"));
+        MockClient.Provider provider = MockClient.when();
+        for (int i = 0; i < routes; i++) {
+            String path = "/resources/" + i;
+            if ("indexed".equals(routeKind)) {
+                provider.GET(path).thenReturn(response);
+            } else if ("regex".equals(routeKind)) {
+                provider.GET().withPathMatching("/resources/" + i + "(\\.json)?").thenReturn(response);
+            } else if ("header".equals(routeKind)) {
+                provider.GET("/resources").withHeader("x-tenant", String.valueOf(i)).thenReturn(response);
+            } else {
+                provider.aRequest().matching(withMethod("GET")).matching(withPath(path)).thenReturn(response);
+            }
+        }
+        client = provider.get();
+
+        Random random = new Random(42);
+        requests = new Request[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            boolean hit = random.nextDouble() < hitRatio;
+            int resource = random.nextInt(routes);
+            if ("header".equals(routeKind)) {
+                String tenant = hit ? String.valueOf(resource) : "missing-" + resource;
+                requests[i] = new Request("GET", "http://localhost/resources?q=" + i,
+                        Collections.singletonList(new Header("X-Tenant", tenant)), null);
+                continue;
+            }
+            String path = hit ? "/resources/" + resource : "/missing/" + resource;
+            requests[i] = new Request("GET", "http://localhost" + path + "?q=" + i, Collections.<Header>emptyList(), null);
+        }
+    }
+
+    @Benchmark
+    public Response execute(Cursor cursor) throws IOException {
+        Request request = requests[cursor.next++ & (REQUESTS - 1)];
+        return client.execute(request);
+    }
+}
@@ -0,0 +1,112 @@
+package retromock;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * What a {@linkplain MockClient} did so far: how many requests it executed, how many did not match any route, how long
+ * it took to find the matching route, and the {@linkplain RouteMetrics metrics} of every route.
+ *
+ * All counters and histograms are striped and lock-free, so recording does not make concurrent requests wait
+ * for each other. The metrics can also be {@linkplain #registerMBean(String) exported} to JMX.
+ *
+ * Metrics are recorded by default. When they are {@linkplain #setEnabled(boolean) disabled}, requests neither read
+ * the clock nor update any counter, and the metrics keep the values recorded before.
+ */
+public final class ClientMetrics implements ClientMetricsMXBean {
+
+    private final AtomicReference<RouteTable> table;
+    final StripedCounter requests = new StripedCounter();
+    final StripedCounter misses = new StripedCounter();
+    final LatencyHistogram dispatchTime = new LatencyHistogram();
+    volatile boolean enabled = true;
+
+    ClientMetrics(AtomicReference<RouteTable> table) {
+        this.table = table;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts or stops recording metrics for the requests executed from now on.
+     */
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * The time it took to find the matching route of a request, or to find that there is none.
+     */
+    @Override
+    public LatencyHistogram getDispatchTime() {
+        return dispatchTime;
+    }
+
+    /**
+     * The metrics of the current routes, in the order the routes were registered.
+     * A route that is replaced starts with new metrics.
+     */
+    @Override
+    public List<RouteMetrics> getRoutes() {
+        List<MockClient.Route> routes = table.get().routes;
+        List<RouteMetrics> result = new ArrayList<>(routes.size());
+        for (MockClient.Route route : routes) {
+            result.add(route.metrics);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the metrics of the current route named {@code name}, or {@code null} if there is none
+     */
+    public RouteMetrics route(String name) {
+        for (MockClient.Route route : table.get().routes) {
+            if (name.equals(route.name)) return route.metrics;
+        }
+        return null;
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server as {@code retromock:type=MockClient,name=<name>}.
+     *
+     * @return unregisters the metrics when closed
+     * @throws JMException if the metrics cannot be registered, e.g. because the name is taken
+     */
+    public Closeable registerMBean(String name) throws JMException {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        final ObjectName objectName = new ObjectName("retromock:type=MockClient,name=" + ObjectName.quote(name));
+        server.registerMBean(this, objectName);
+        return new Closeable() {
+            @Override
+            public void close() throws IOException {
+                try {
+                    server.unregisterMBean(objectName);
+                } catch (JMException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+}
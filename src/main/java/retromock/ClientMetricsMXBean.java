@@ -0,0 +1,21 @@
+package retromock;
+
+import java.util.List;
+
+/**
+ * The JMX view of the {@linkplain ClientMetrics} of a {@linkplain MockClient}.
+ */
+public interface ClientMetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getRequests();
+
+    long getMisses();
+
+    LatencyHistogram getDispatchTime();
+
+    List<RouteMetrics> getRoutes();
+}
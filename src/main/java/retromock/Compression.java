@@ -0,0 +1,207 @@
+package retromock;
+
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retromock.matchers.RequestView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Serves the bodies of another {@linkplain MockClient.ResponseFactory} in the content coding the request accepts,
+ * see {@linkplain MockClient.ResponseFactory#compressed(MockClient.ResponseFactory)}.
+ *
+ * The coding is negotiated from the {@code Accept-Encoding} header of every request: {@code gzip} or
+ * {@code deflate}, whichever has the higher quality, {@code gzip} on a tie, and no coding if neither is accepted.
+ * A body that is already encoded, like a fixture stored with {@code Content-Encoding: gzip}, is served as it is if
+ * the request accepts its coding and decoded otherwise.
+ *
+ * The encoded bodies are cached as long as the factory returns the same body object, which it does for fixtures
+ * without request placeholders and fixed responses, so a body is compressed once per coding and not per request.
+ * Bodies that are created for every request are compressed for every request.
+ */
+final class Compression extends MockClient.ResponseFactory {
+
+    static final String IDENTITY = "identity";
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private final MockClient.ResponseFactory factory;
+    private final AtomicReference<Encodings> cache = new AtomicReference<>();
+
+    Compression(MockClient.ResponseFactory factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Response createFrom(Request request) throws IOException {
+        Response response = factory.createFrom(request);
+        TypedInput body = response.getBody();
+        if (body == null || body.length() == 0) return response;
+
+        String source = IDENTITY;
+        for (Header header : response.getHeaders()) {
+            if ("Content-Encoding".equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                source = header.getValue().trim().toLowerCase(Locale.ENGLISH);
+            }
+        }
+        if (!source.equals(IDENTITY) && !source.equals(GZIP) && !source.equals(DEFLATE)) {
+            return response; // a coding we cannot convert
+        }
+        List<String> accepted = RequestView.of(request).headers("Accept-Encoding");
+        String target = source.equals(IDENTITY) || quality(accepted, source) == 0 ? negotiate(accepted) : source;
+        if (target.equals(source)) return response;
+
+        Encodings encodings = cache.get();
+        if (encodings == null || encodings.source != body) {
+            encodings = new Encodings(body, source);
+            cache.set(encodings);
+        }
+        byte[] encoded = encodings.get(target);
+
+        List<Header> headers = new ArrayList<>(response.getHeaders().size() + 2);
+        boolean vary = false;
+        for (Header header : response.getHeaders()) {
+            String name = header.getName();
+            if ("Content-Encoding".equalsIgnoreCase(name)) continue;
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                headers.add(new Header(name, String.valueOf(encoded.length)));
+                continue;
+            }
+            vary |= "Vary".equalsIgnoreCase(name);
+            headers.add(header);
+        }
+        if (!target.equals(IDENTITY)) {
+            headers.add(new Header("Content-Encoding", target));
+        }
+        if (!vary) {
+            headers.add(new Header("Vary", "Accept-Encoding"));
+        }
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), headers,
+                new TypedByteArray(body.mimeType(), encoded));
+    }
+
+    /**
+     * @return {@code gzip}, {@code deflate} or {@code identity}, as preferred by {@code Accept-Encoding} headers
+     */
+    static String negotiate(List<String> acceptEncoding) {
+        double gzip = quality(acceptEncoding, GZIP);
+        double deflate = quality(acceptEncoding, DEFLATE);
+        if (gzip == 0 && deflate == 0) return IDENTITY;
+        return gzip >= deflate ? GZIP : DEFLATE;
+    }
+
+    /**
+     * @return the quality {@code Accept-Encoding} headers give {@code coding}, {@code 0} if it is not acceptable
+     */
+    static double quality(List<String> acceptEncoding, String coding) {
+        double explicit = -1;
+        double wildcard = -1;
+        for (String header : acceptEncoding) {
+            if (header == null) continue;
+            for (String element : header.split(",")) {
+                String[] parts = element.split(";");
+                String name = parts[0].trim().toLowerCase(Locale.ENGLISH);
+                double quality = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                        try {
+                            quality = Double.parseDouble(parameter.substring(2).trim());
+                        } catch (NumberFormatException e) {
+                            quality = 0;
+                        }
+                    }
+                }
+                if (name.equals(coding) || coding.equals(GZIP) && name.equals("x-gzip")) {
+                    explicit = Math.max(explicit, quality);
+                } else if (name.equals("*")) {
+                    wildcard = Math.max(wildcard, quality);
+                }
+            }
+        }
+        return explicit >= 0 ? explicit : Math.max(wildcard, 0);
+    }
+
+    /**
+     * A body in all codings it was requested in so far.
+     */
+    private static final class Encodings {
+        final TypedInput source;
+        private final String sourceCoding;
+        private volatile byte[] identity;
+        private volatile byte[] gzip;
+        private volatile byte[] deflate;
+
+        Encodings(TypedInput source, String sourceCoding) {
+            this.source = source;
+            this.sourceCoding = sourceCoding;
+        }
+
+        // concurrent first requests may both encode the body; either result is kept
+        byte[] get(String coding) throws IOException {
+            switch (coding) {
+                case GZIP:
+                    if (gzip == null) gzip = encode(identity(), GZIP);
+                    return gzip;
+                case DEFLATE:
+                    if (deflate == null) deflate = encode(identity(), DEFLATE);
+                    return deflate;
+                default:
+                    return identity();
+            }
+        }
+
+        private byte[] identity() throws IOException {
+            byte[] result = identity;
+            if (result == null) {
+                try (InputStream in = decode(source.in())) {
+                    identity = result = readFully(in);
+                }
+            }
+            return result;
+        }
+
+        private InputStream decode(InputStream in) throws IOException {
+            switch (sourceCoding) {
+                case GZIP:
+                    return new GZIPInputStream(in);
+                case DEFLATE:
+                    return new InflaterInputStream(in);
+                default:
+                    return in;
+            }
+        }
+    }
+
+    private static byte[] encode(byte[] bytes, String coding) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, bytes.length / 4));
+        try (OutputStream out = coding.equals(GZIP) ? new GZIPOutputStream(buffer) : new DeflaterOutputStream(buffer)) {
+            out.write(bytes);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
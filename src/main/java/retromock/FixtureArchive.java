@@ -0,0 +1,280 @@
+package retromock;
+
+import retrofit.client.Header;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retromock.parser.ResponseTemplate;
+import retromock.parser.TypedByteBuffer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A single file holding a whole directory of fixtures in parsed form, to be served without parsing anything.
+ *
+ * An archive is {@linkplain #pack(Path, Path) packed} from a directory as understood by
+ * {@linkplain MockClient.Provider#importFixtures(Path)} and {@linkplain #open(Path) opened} by memory-mapping it.
+ * Opening only reads the index, i.e. the method, path, status line and headers of every fixture; the bodies are
+ * served as slices of the mapping, so they are only paged in when they are read, and forked JVMs serving the same
+ * archive share the pages. Bodies that refer to the request, see {@linkplain retromock.parser.HttpParser}, are
+ * copied to the heap when they are first served.
+ *
+ * The format is a magic number and version, the length of the index, the index and all bodies, back to back:
+ * <pre>
+ * "RMFA" version:int indexLength:int
+ * count:int ( method:string path:string status:int reason:string static:boolean mimeType:string
+ *             headerCount:int ( name:string value:string )* bodyOffset:long bodyLength:long )*
+ * bodies
+ * </pre>
+ * where a string is its length in bytes as an int followed by its UTF-8 bytes, so unlike
+ * {@linkplain DataOutputStream#writeUTF(String)} it is not limited to 64 KiB. Archives are limited to 2 GiB.
+ */
+public final class FixtureArchive {
+
+    private static final byte[] MAGIC = { 'R', 'M', 'F', 'A' };
+    private static final int VERSION = 2;
+    private static final int PREAMBLE = MAGIC.length + 4 + 4;
+
+    private final Path path;
+    private final List<Entry> entries;
+
+    private FixtureArchive(Path path, List<Entry> entries) {
+        this.path = path;
+        this.entries = Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Packs the fixtures in {@code directory} into the archive {@code archive}, replacing it atomically.
+     *
+     * @throws IOException listing every fixture that could not be loaded as a suppressed exception
+     */
+    public static void pack(Path directory, Path archive) throws IOException {
+        List<FixtureImporter.Entry> fixtures = FixtureImporter.load(directory);
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(index);
+        List<TypedInput> bodies = new ArrayList<>(fixtures.size());
+        out.writeInt(fixtures.size());
+        long offset = 0;
+        for (FixtureImporter.Entry fixture : fixtures) {
+            ResponseTemplate template = fixture.fixture.template();
+            TypedInput body = template.body();
+            writeString(out, fixture.method);
+            writeString(out, fixture.path);
+            out.writeInt(template.status());
+            writeString(out, template.reason());
+            out.writeBoolean(template.isStatic());
+            writeString(out, body.mimeType() == null ? "" : body.mimeType());
+            out.writeInt(template.headers().size());
+            for (Header header : template.headers()) {
+                writeString(out, header.getName());
+                writeString(out, header.getValue() == null ? "" : header.getValue());
+            }
+            out.writeLong(offset);
+            out.writeLong(body.length());
+            offset += body.length();
+            bodies.add(body);
+        }
+        out.flush();
+        if (PREAMBLE + index.size() + offset > Integer.MAX_VALUE) {
+            throw new IOException("fixtures in " + directory + " are too large for an archive");
+        }
+
+        Path absolute = archive.toAbsolutePath();
+        Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream file = Files.newOutputStream(temporary, StandardOpenOption.WRITE)) {
+                DataOutputStream preamble = new DataOutputStream(file);
+                preamble.write(MAGIC);
+                preamble.writeInt(VERSION);
+                preamble.writeInt(index.size());
+                index.writeTo(file);
+                byte[] buffer = new byte[64 * 1024];
+                for (TypedInput body : bodies) {
+                    try (InputStream in = body.in()) {
+                        int read;
+                        while ((read = in.read(buffer)) != -1) {
+                            file.write(buffer, 0, read);
+                        }
+                    }
+                }
+            }
+            Files.move(temporary, absolute, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Opens an archive written by {@linkplain #pack(Path, Path)}.
+     *
+     * @throws IOException if the file cannot be read or is no archive of this version
+     */
+    public static FixtureArchive open(Path archive) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(archive, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(archive + " is too large for an archive");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (mapped.remaining() < PREAMBLE || !hasMagic(mapped)) {
+            throw new IOException(archive + " is no fixture archive");
+        }
+        int version = mapped.getInt(MAGIC.length);
+        if (version != VERSION) {
+            throw new IOException(archive + " has version " + version + ", expected " + VERSION);
+        }
+        int indexLength = mapped.getInt(MAGIC.length + 4);
+        int bodiesStart = PREAMBLE + indexLength;
+        if (indexLength < 0 || bodiesStart > mapped.limit()) {
+            throw new IOException(archive + " is truncated");
+        }
+
+        byte[] index = new byte[indexLength];
+        ByteBuffer indexView = mapped.duplicate();
+        indexView.position(PREAMBLE);
+        indexView.get(index);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+        int count = in.readInt();
+        List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(count, indexLength)));
+        for (int i = 0; i < count; i++) {
+            String method = readString(in);
+            String path = readString(in);
+            int status = in.readInt();
+            String reason = readString(in);
+            boolean isStatic = in.readBoolean();
+            String mimeType = readString(in);
+            int headerCount = in.readInt();
+            List<Header> headers = new ArrayList<>(headerCount);
+            for (int h = 0; h < headerCount; h++) {
+                headers.add(new Header(readString(in), readString(in)));
+            }
+            long offset = in.readLong();
+            long length = in.readLong();
+            if (offset < 0 || length < 0 || bodiesStart + offset + length > mapped.limit()) {
+                throw new IOException(archive + " is truncated");
+            }
+            ByteBuffer body = mapped.duplicate();
+            body.position((int) (bodiesStart + offset));
+            body.limit((int) (bodiesStart + offset + length));
+            entries.add(new Entry(method, path, status, reason, headers,
+                    new TypedByteBuffer(mimeType.isEmpty() ? null : mimeType, body), isStatic));
+        }
+        return new FixtureArchive(archive, entries);
+    }
+
+    /**
+     * Packs a directory of fixtures from the command line: {@code FixtureArchive <directory> <archive>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: " + FixtureArchive.class.getName() + " <fixture directory> <archive>");
+            System.exit(2);
+        }
+        pack(Paths.get(args[0]), Paths.get(args[1]));
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    /**
+     * @return the fixtures in the archive, in the order they were packed
+     */
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new EOFException("string of " + length + " bytes exceeds the index");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean hasMagic(ByteBuffer buffer) {
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(i) != MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * A fixture in an archive, with the route it answers.
+     */
+    public static final class Entry {
+        private final String method;
+        private final String path;
+        private final int status;
+        private final String reason;
+        private final List<Header> headers;
+        private final TypedByteBuffer body;
+        private final boolean isStatic;
+        private volatile ResponseTemplate template;
+
+        Entry(String method, String path, int status, String reason, List<Header> headers, TypedByteBuffer body,
+              boolean isStatic) {
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+            this.body = body;
+            this.isStatic = isStatic;
+        }
+
+        public String method() {
+            return method;
+        }
+
+        public String path() {
+            return path;
+        }
+
+        /**
+         * @return the template of the fixture, created on first use
+         */
+        public ResponseTemplate template() {
+            ResponseTemplate result = template;
+            if (result == null) {
+                TypedInput input = body;
+                if (!isStatic) {
+                    ByteBuffer bytes = body.buffer();
+                    byte[] copy = new byte[bytes.remaining()];
+                    bytes.get(copy);
+                    input = new TypedByteArray(body.mimeType(), copy);
+                }
+                template = result = ResponseTemplate.of(status, reason, headers, input);
+            }
+            return result;
+        }
+    }
+}
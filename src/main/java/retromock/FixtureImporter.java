@@ -0,0 +1,173 @@
+package retromock;
+
+import retromock.parser.CachedFixture;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Pattern;
+
+/**
+ * Derives routes from a directory of fixtures in the format understood by {@linkplain retromock.parser.HttpParser}
+ * and parses all fixtures in parallel.
+ *
+ * If the directory contains a {@value #MANIFEST} file, it lists the routes, one per line:
+ * <pre>
+ * # method path file
+ * GET /users/42 users/42.http
+ * POST /users created.http
+ * </pre>
+ * Otherwise the directory layout mirrors the URL paths and fixtures are named after the request method,
+ * e.g. {@code users/42/GET.http} answers {@code GET /users/42} and {@code GET.http} answers {@code GET /}.
+ */
+class FixtureImporter {
+
+    static final String MANIFEST = "routes.txt";
+    static final String EXTENSION = ".http";
+    private static final Pattern METHOD = Pattern.compile("[A-Z]+");
+    /** fixtures parsed per task, before work is split further */
+    private static final int BATCH_SIZE = 16;
+
+    static class Entry {
+        final String method;
+        final String path;
+        final CachedFixture fixture;
+
+        Entry(String method, String path, Path file) {
+            this.method = method;
+            this.path = path;
+            this.fixture = new CachedFixture(file);
+        }
+    }
+
+    /**
+     * Finds the fixtures in {@code directory} and parses them in parallel.
+     *
+     * @throws IOException listing the fixtures that could not be found or parsed, as suppressed exceptions
+     */
+    static List<Entry> load(Path directory) throws IOException {
+        final Queue<Exception> errors = new ConcurrentLinkedQueue<>();
+        Path manifest = directory.resolve(MANIFEST);
+        List<Entry> entries = Files.isRegularFile(manifest)
+                ? fromManifest(directory, manifest, errors)
+                : fromLayout(directory, errors);
+        if (errors.isEmpty()) {
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                pool.invoke(new Parse(entries, 0, entries.size(), errors, new AtomicBoolean()));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        if (!errors.isEmpty()) {
+            IOException failure = new IOException(errors.size() + " fixture(s) in " + directory + " could not be loaded");
+            for (Exception error : errors) {
+                failure.addSuppressed(error);
+            }
+            throw failure;
+        }
+        return entries;
+    }
+
+    private static List<Entry> fromManifest(Path directory, Path manifest, Queue<Exception> errors) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            String[] parts = line.split("\\s+");
+            if (parts.length != 3 || !METHOD.matcher(parts[0]).matches() || !parts[1].startsWith("/")) {
+                errors.add(new IllegalArgumentException(manifest + ":" + lineNumber + ": expected 'METHOD /path file', got '" + line + "'"));
+                continue;
+            }
+            entries.add(new Entry(parts[0], parts[1], directory.resolve(parts[2])));
+        }
+        return entries;
+    }
+
+    private static List<Entry> fromLayout(final Path directory, final Queue<Exception> errors) throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String fileName = file.getFileName().toString();
+                if (!fileName.endsWith(EXTENSION)) return FileVisitResult.CONTINUE;
+                String method = fileName.substring(0, fileName.length() - EXTENSION.length());
+                if (!METHOD.matcher(method).matches()) {
+                    errors.add(new IllegalArgumentException(file + ": fixture name is not a request method"));
+                    return FileVisitResult.CONTINUE;
+                }
+                StringBuilder path = new StringBuilder();
+                for (Path segment : directory.relativize(file.getParent())) {
+                    if (segment.toString().isEmpty()) continue;
+                    path.append('/').append(segment);
+                }
+                entries.add(new Entry(method, path.length() == 0 ? "/" : path.toString(), file));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry a, Entry b) {
+                int result = a.path.compareTo(b.path);
+                return result != 0 ? result : a.method.compareTo(b.method);
+            }
+        });
+        return entries;
+    }
+
+    /**
+     * Parses a range of fixtures, splitting it while it is larger than {@value #BATCH_SIZE}.
+     * Once any fixture failed, remaining fixtures are not parsed anymore.
+     */
+    private static class Parse extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Entry> entries;
+        private final int from;
+        private final int to;
+        private final Queue<Exception> errors;
+        private final AtomicBoolean failed;
+
+        Parse(List<Entry> entries, int from, int to, Queue<Exception> errors, AtomicBoolean failed) {
+            this.entries = entries;
+            this.from = from;
+            this.to = to;
+            this.errors = errors;
+            this.failed = failed;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Parse(entries, from, middle, errors, failed), new Parse(entries, middle, to, errors, failed));
+                return;
+            }
+            for (int i = from; i < to && !failed.get(); i++) {
+                CachedFixture fixture = entries.get(i).fixture;
+                try {
+                    fixture.template();
+                } catch (IOException | RuntimeException e) {
+                    errors.add(new IOException(fixture.path() + ": " + e.getMessage(), e));
+                    failed.set(true);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package retromock;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retromock.matchers.RequestView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A {@linkplain retrofit.client.Client} that passes requests on to a real client and records the responses as
+ * fixtures in the format of {@linkplain retromock.parser.HttpParser}, to be imported with
+ * {@linkplain MockClient.Provider#importFixtures(Path)} later:
+ * <pre>
+ * try (FixtureRecorder recorder = new FixtureRecorder(realClient, Paths.get("src/test/resources/api"))) {
+ *     MockClient.Provider routes = MockClient.when().proxyMissesTo(recorder);
+ *     // run the tests against routes
+ * }
+ * </pre>
+ *
+ * The first response for every method and path is written to its own file, e.g. {@code GET_users_42.http}, and
+ * listed in the {@value FixtureImporter#MANIFEST} manifest of the directory. Like the manifest, recording ignores the
+ * query string, so {@code ?type=a} and {@code ?type=b} share the fixture of whichever was recorded first. Requests
+ * whose path contains whitespace cannot be listed and are passed on without being recorded.
+ *
+ * The caller gets the live response. Its body is copied while the caller reads it, and the fixture is recorded once
+ * the body was read to its end or closed, unless the recorder was {@linkplain #close() closed} before. Until then,
+ * e.g. if the caller never reads the body or reading it fails, later requests for the same method and path are
+ * recorded instead; while several such bodies are read at once, the first one to complete is recorded. Fixtures are written by a single background thread that takes all pending
+ * fixtures at once and appends their routes to the manifest in one write, so recording adds no disk I/O to the
+ * requests.
+ */
+public class FixtureRecorder implements Client, Closeable {
+
+    private static final Recording STOP = new Recording(null, null, null, null);
+
+    private final Client delegate;
+    private final Path directory;
+    private final Set<String> recorded = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final BlockingQueue<Recording> queue = new LinkedBlockingQueue<>();
+    private final List<IOException> failures = new ArrayList<>();
+    private final Thread writer;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * @param delegate the client to pass requests on to
+     * @param directory the directory to write the fixtures to, which is created if it does not exist
+     */
+    public FixtureRecorder(Client delegate, Path directory) throws IOException {
+        this.delegate = delegate;
+        this.directory = Files.createDirectories(directory);
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        }, "retromock-recorder");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        Response response = delegate.execute(request);
+        String path = RequestView.of(request).path();
+        if (closed.get() || path == null || containsWhitespace(path)
+                || recorded.contains(request.getMethod() + " " + path)) {
+            return response;
+        }
+
+        TypedInput body = response.getBody();
+        if (body == null) {
+            record(new Recording(request.getMethod(), path, response, new byte[0]));
+            return response;
+        }
+        if (body instanceof TypedByteArray) {
+            record(new Recording(request.getMethod(), path, response, ((TypedByteArray) body).getBytes()));
+            return response;
+        }
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                new TeeInput(request.getMethod(), path, response));
+    }
+
+    /**
+     * Waits until all fixtures recorded so far are written.
+     *
+     * @throws IOException listing every fixture that could not be written since the last call as a suppressed
+     *                     exception
+     */
+    public void flush() throws IOException {
+        Recording marker = new Recording(null, null, null, null);
+        queue.add(marker);
+        try {
+            while (!marker.written.await(100, TimeUnit.MILLISECONDS)) {
+                if (!writer.isAlive()) break; // closed, everything was written before
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for fixtures to be written");
+        }
+        synchronized (failures) {
+            if (failures.isEmpty()) return;
+            IOException failure = new IOException(failures.size() + " fixtures could not be written to " + directory);
+            for (IOException e : failures) {
+                failure.addSuppressed(e);
+            }
+            failures.clear();
+            throw failure;
+        }
+    }
+
+    /**
+     * Writes all fixtures recorded so far and stops the writer thread. Requests are still passed on afterwards,
+     * but no longer recorded. Bodies that are still being read are not recorded either; each of them whose route was
+     * not recorded before is reported as a failure by the next {@linkplain #flush()} once it was read.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            if (!closed.compareAndSet(false, true)) return;
+        }
+        try {
+            flush();
+        } finally {
+            queue.add(STOP);
+        }
+    }
+
+    /**
+     * Queues {@code recording} unless a response for its method and path was queued before.
+     */
+    private void record(Recording recording) {
+        // under the lock, so that no recording is queued after close() stopped the writer
+        String route = recording.method + " " + recording.path;
+        synchronized (queue) {
+            if (closed.get()) {
+                if (!recorded.contains(route)) {
+                    fail(new IOException("recorder was closed before the response to " + route + " was read"));
+                }
+                return;
+            }
+            if (recorded.add(route)) {
+                queue.add(recording);
+            }
+        }
+    }
+
+    private void write() {
+        Set<String> fileNames = new HashSet<>();
+        List<Recording> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+
+            StringBuilder manifest = new StringBuilder();
+            boolean stop = false;
+            for (Recording recording : batch) {
+                if (recording == STOP) {
+                    stop = true;
+                } else if (recording.response != null) {
+                    String fileName = fileName(recording, fileNames);
+                    try {
+                        Files.write(directory.resolve(fileName), recording.fixture());
+                        manifest.append(recording.method).append(' ').append(recording.path).append(' ')
+                                .append(fileName).append('\n');
+                    } catch (IOException e) {
+                        fail(new IOException("could not write fixture " + fileName, e));
+                    }
+                }
+            }
+            if (manifest.length() > 0) {
+                try {
+                    Files.write(directory.resolve(FixtureImporter.MANIFEST),
+                            manifest.toString().getBytes(StandardCharsets.UTF_8),
+                            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    fail(new IOException("could not write " + FixtureImporter.MANIFEST, e));
+                }
+            }
+            // markers are only released after the fixtures queued before them were written
+            for (Recording recording : batch) {
+                recording.written.countDown();
+            }
+            batch.clear();
+            if (stop) return;
+        }
+    }
+
+    private void fail(IOException e) {
+        synchronized (failures) {
+            failures.add(e);
+        }
+    }
+
+    private String fileName(Recording recording, Set<String> taken) {
+        StringBuilder name = new StringBuilder(recording.method);
+        for (String segment : recording.path.split("/")) {
+            if (segment.isEmpty()) continue;
+            name.append('_');
+            for (int i = 0; i < segment.length(); i++) {
+                char c = segment.charAt(i);
+                name.append(Character.isLetterOrDigit(c) || c == '-' || c == '.' ? c : '_');
+            }
+        }
+        String base = name.toString();
+        String fileName = base + ".http";
+        for (int i = 2; !taken.add(fileName) || Files.exists(directory.resolve(fileName)); i++) {
+            fileName = base + "_" + i + ".http";
+        }
+        return fileName;
+    }
+
+    private static boolean containsWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static class Recording {
+        final String method;
+        final String path;
+        final Response response;
+        final byte[] body;
+        final CountDownLatch written = new CountDownLatch(1);
+
+        Recording(String method, String path, Response response, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.response = response;
+            this.body = body;
+        }
+
+        byte[] fixture() {
+            StringBuilder head = new StringBuilder();
+            String reason = response.getReason();
+            head.append("HTTP/1.1 ").append(response.getStatus()).append(' ')
+                    .append(reason == null || reason.isEmpty() ? "Recorded" : reason).append('\n');
+            boolean hasContentType = false;
+            for (Header header : response.getHeaders()) {
+                String name = header.getName();
+                if (name == null || name.equalsIgnoreCase("Transfer-Encoding")) continue;
+                String value = header.getValue();
+                if (name.equalsIgnoreCase("Content-Length")) {
+                    value = "${LENGTH}";
+                } else if (name.equalsIgnoreCase("Date")) {
+                    value = "${DATE}";
+                }
+                hasContentType |= name.equalsIgnoreCase("Content-Type");
+                head.append(name).append(": ").append(value).append('\n');
+            }
+            TypedInput body = response.getBody();
+            if (!hasContentType && body != null && body.mimeType() != null) {
+                head.append("Content-Type: ").append(body.mimeType()).append('\n');
+            }
+            head.append('\n');
+            byte[] headBytes = head.toString().getBytes(StandardCharsets.UTF_8);
+            byte[] fixture = new byte[headBytes.length + this.body.length];
+            System.arraycopy(headBytes, 0, fixture, 0, headBytes.length);
+            System.arraycopy(this.body, 0, fixture, headBytes.length, this.body.length);
+            return fixture;
+        }
+    }
+
+    /**
+     * The live body of a response, copied into the fixture while it is read.
+     */
+    private class TeeInput implements TypedInput {
+        private final String method;
+        private final String path;
+        private final Response response;
+        private final AtomicBoolean opened = new AtomicBoolean();
+
+        TeeInput(String method, String path, Response response) {
+            this.method = method;
+            this.path = path;
+            this.response = response;
+        }
+
+        @Override
+        public String mimeType() {
+            return response.getBody().mimeType();
+        }
+
+        @Override
+        public long length() {
+            return response.getBody().length();
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            InputStream in = response.getBody().in();
+            if (!opened.compareAndSet(false, true)) {
+                return in; // only the first reader is recorded
+            }
+            long length = length();
+            final ByteArrayOutputStream copy =
+                    new ByteArrayOutputStream(length > 0 && length < Integer.MAX_VALUE ? (int) length : 8192);
+            return new TeeStream(in, copy) {
+                @Override
+                void completed() {
+                    record(new Recording(method, path, response, copy.toByteArray()));
+                }
+            };
+        }
+    }
+
+    private abstract static class TeeStream extends FilterInputStream {
+        private final OutputStream copy;
+        private boolean completed;
+
+        TeeStream(InputStream in, OutputStream copy) {
+            super(in);
+            this.copy = copy;
+        }
+
+        abstract void completed();
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) complete();
+            else copy.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) complete();
+            else copy.write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (r == -1) break;
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        /**
+         * Reads the rest of the body, so the fixture is complete even if the caller stopped reading early.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                if (!completed) {
+                    byte[] buffer = new byte[4096];
+                    while (read(buffer, 0, buffer.length) != -1) {
+                        // copied by read
+                    }
+                }
+            } finally {
+                super.close();
+            }
+        }
+
+        private void complete() {
+            if (!completed) {
+                completed = true;
+                completed();
+            }
+        }
+    }
+}
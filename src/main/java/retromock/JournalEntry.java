@@ -0,0 +1,128 @@
+package retromock;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.mime.TypedByteArray;
+
+import java.util.List;
+
+/**
+ * A request recorded in the {@linkplain RequestJournal} of a {@linkplain MockClient}.
+ */
+public final class JournalEntry {
+
+    private final long sequence;
+    private final long timestampMillis;
+    private final String method;
+    private final String url;
+    private final List<Header> headers;
+    private final String mimeType;
+    private final byte[] body;
+    private final long bodyLength;
+    private final boolean truncated;
+    private final boolean matched;
+    private final String route;
+    /** all matchers of the matched route, {@code null} if none matched */
+    private final Matcher<Request> routeMatcher;
+
+    JournalEntry(long sequence, long timestampMillis, Request request, String mimeType, byte[] body, long bodyLength,
+                 boolean truncated, MockClient.Route route) {
+        this.sequence = sequence;
+        this.timestampMillis = timestampMillis;
+        this.method = request.getMethod();
+        this.url = request.getUrl();
+        this.headers = request.getHeaders();
+        this.mimeType = mimeType;
+        this.body = body;
+        this.bodyLength = bodyLength;
+        this.truncated = truncated;
+        this.matched = route != null;
+        this.route = route == null ? null : route.name;
+        this.routeMatcher = route == null ? null : route.requestMatcher;
+    }
+
+    /**
+     * @return the position of the request among all requests executed by the client, starting at 0
+     */
+    public long sequence() {
+        return sequence;
+    }
+
+    public long timestampMillis() {
+        return timestampMillis;
+    }
+
+    public String method() {
+        return method;
+    }
+
+    public String url() {
+        return url;
+    }
+
+    public List<Header> headers() {
+        return headers;
+    }
+
+    /**
+     * @return the recorded body, which is cut off after the maximum body size of the journal,
+     *         or {@code null} if the request had no body or no body was recorded
+     */
+    public byte[] body() {
+        return body;
+    }
+
+    /**
+     * @return the length of the whole body, {@code -1} if unknown
+     */
+    public long bodyLength() {
+        return bodyLength;
+    }
+
+    /**
+     * @return if the recorded body was cut off after the maximum body size of the journal
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return if the request matched a route
+     */
+    public boolean matched() {
+        return matched;
+    }
+
+    /**
+     * @return the {@linkplain MockClient.Provider.RouteBuilder#named(String) name} of the matched route,
+     *         or {@code null} if the request matched no route or an unnamed one
+     */
+    public String route() {
+        return route;
+    }
+
+    /**
+     * @return the description of all matchers of the matched route, named or not,
+     *         or {@code null} if the request matched no route
+     */
+    public String routeDescription() {
+        return routeMatcher == null ? null : StringDescription.toString(routeMatcher);
+    }
+
+    /**
+     * @return the recorded request, with the recorded body, to be checked with the request matchers. If the body
+     *         {@linkplain #isTruncated() was cut off}, matchers that parse it, e.g. as JSON, can throw; the
+     *         {@linkplain RequestJournal journal} treats such entries as not matching.
+     */
+    public Request request() {
+        return new Request(method, url, headers, body == null ? null : new TypedByteArray(mimeType, body));
+    }
+
+    @Override
+    public String toString() {
+        String answeredBy = route != null ? route : routeDescription();
+        return "#" + sequence + " " + method + " " + url + (answeredBy == null ? "" : " -> " + answeredBy);
+    }
+}
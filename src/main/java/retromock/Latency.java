@@ -0,0 +1,100 @@
+package retromock;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How long a route of a {@linkplain MockClient} takes before it answers, see
+ * {@linkplain MockClient.Provider.RouteBuilder#delayedBy(Latency)}.
+ *
+ * A latency is sampled anew for every request.
+ */
+public abstract class Latency {
+
+    /**
+     * Always the same latency.
+     */
+    public static Latency fixed(long latency, TimeUnit unit) {
+        checkNotNegative(latency);
+        final long nanos = unit.toNanos(latency);
+        return new Latency() {
+            @Override
+            long sampleNanos(Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * A latency uniformly distributed between {@code min} (inclusive) and {@code max} (exclusive).
+     */
+    public static Latency uniform(long min, long max, TimeUnit unit) {
+        checkNotNegative(min);
+        if (max <= min) {
+            throw new IllegalArgumentException("max must be greater than min, got " + min + " and " + max);
+        }
+        final long minNanos = unit.toNanos(min);
+        final long rangeNanos = unit.toNanos(max) - minNanos;
+        return new Latency() {
+            @Override
+            long sampleNanos(Random random) {
+                return minNanos + (long) (random.nextDouble() * rangeNanos);
+            }
+        };
+    }
+
+    /**
+     * A latency following the given percentiles, e.g. {@code percentiles(MILLISECONDS, {50, 99, 100}, {20, 250, 1000})}
+     * for a median of 20ms, a 99th percentile of 250ms and a maximum of one second. Latencies between two percentiles
+     * are interpolated linearly, latencies below the first percentile are the first latency.
+     *
+     * @param percentiles ascending percentiles between 0 and 100
+     * @param latencies the latency at each percentile, ascending
+     */
+    public static Latency percentiles(TimeUnit unit, double[] percentiles, long[] latencies) {
+        if (percentiles.length == 0 || percentiles.length != latencies.length) {
+            throw new IllegalArgumentException("need as many latencies as percentiles, got "
+                    + Arrays.toString(percentiles) + " and " + Arrays.toString(latencies));
+        }
+        final double[] quantiles = new double[percentiles.length];
+        final long[] nanos = new long[latencies.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            checkNotNegative(latencies[i]);
+            if (percentiles[i] < 0 || percentiles[i] > 100
+                    || i > 0 && (percentiles[i] <= percentiles[i - 1] || latencies[i] < latencies[i - 1])) {
+                throw new IllegalArgumentException("percentiles and latencies must be ascending, got "
+                        + Arrays.toString(percentiles) + " and " + Arrays.toString(latencies));
+            }
+            quantiles[i] = percentiles[i] / 100;
+            nanos[i] = unit.toNanos(latencies[i]);
+        }
+        return new Latency() {
+            @Override
+            long sampleNanos(Random random) {
+                double q = random.nextDouble();
+                if (q <= quantiles[0]) return nanos[0];
+                for (int i = 1; i < quantiles.length; i++) {
+                    if (q <= quantiles[i]) {
+                        double fraction = (q - quantiles[i - 1]) / (quantiles[i] - quantiles[i - 1]);
+                        return nanos[i - 1] + (long) (fraction * (nanos[i] - nanos[i - 1]));
+                    }
+                }
+                return nanos[nanos.length - 1];
+            }
+        };
+    }
+
+    abstract long sampleNanos(Random random);
+
+    long sampleNanos() {
+        return sampleNanos(ThreadLocalRandom.current());
+    }
+
+    private static void checkNotNegative(long latency) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("latency must not be negative, got " + latency);
+        }
+    }
+}
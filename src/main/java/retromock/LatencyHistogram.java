@@ -0,0 +1,162 @@
+package retromock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of durations in nanoseconds, e.g. of how long the matchers of a route take.
+ *
+ * Like an HDR histogram, values are counted in buckets whose width grows with the value: every power of two is split
+ * into {@value #SUB_BUCKETS} buckets, so percentiles are accurate to within 12.5% at any magnitude. Durations from
+ * 2^{@value #MAX_EXPONENT} nanoseconds (about 18 minutes) up are counted in the last bucket. Recording is lock-free,
+ * and the buckets are only allocated when the first value is recorded.
+ *
+ * Like a {@linkplain StripedCounter}, values are counted in a single set of buckets until an update loses a race.
+ * From then on every thread counts in one of several sets of buckets, chosen by its thread id and allocated when
+ * first used, and reads sum all sets.
+ *
+ * Reads are not an atomic snapshot while values are recorded.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final AtomicReference<AtomicLongArray> buckets = new AtomicReference<>();
+    /** buckets per stripe, {@code null} until recording was contended */
+    private final AtomicReference<AtomicReferenceArray<AtomicLongArray>> stripes = new AtomicReference<>();
+    private final StripedCounter total = new StripedCounter();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        AtomicLongArray counts = buckets.get();
+        if (counts == null) {
+            buckets.compareAndSet(null, new AtomicLongArray(BUCKETS));
+            counts = buckets.get();
+        }
+        int index = index(nanos);
+        AtomicReferenceArray<AtomicLongArray> striped = stripes.get();
+        if (striped == null) {
+            long count = counts.get(index);
+            if (!counts.compareAndSet(index, count, count + 1)) {
+                stripes.compareAndSet(null, new AtomicReferenceArray<AtomicLongArray>(StripedCounter.STRIPES));
+                striped = stripes.get();
+            }
+        }
+        if (striped != null) {
+            int stripe = StripedCounter.stripe();
+            AtomicLongArray stripeCounts = striped.get(stripe);
+            if (stripeCounts == null) {
+                striped.compareAndSet(stripe, null, new AtomicLongArray(BUCKETS));
+                stripeCounts = striped.get(stripe);
+            }
+            stripeCounts.incrementAndGet(index);
+        }
+        total.add(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // retry until the recorded maximum is at least nanos
+        }
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (long bucket : snapshot()) {
+            count += bucket;
+        }
+        return count;
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    public long getMeanNanos() {
+        long count = getCount();
+        return count == 0 ? 0 : total.sum() / count;
+    }
+
+    public long getP50Nanos() {
+        return percentileNanos(50);
+    }
+
+    public long getP90Nanos() {
+        return percentileNanos(90);
+    }
+
+    public long getP99Nanos() {
+        return percentileNanos(99);
+    }
+
+    public long getP999Nanos() {
+        return percentileNanos(99.9);
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return the largest duration in the bucket that contains the percentile, or {@code 0} if nothing was recorded
+     */
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100, got " + percentile);
+        }
+        long[] snapshot = snapshot();
+        long count = 0;
+        for (long bucket : snapshot) {
+            count += bucket;
+        }
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * @return the counts of all buckets, summed over all stripes
+     */
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKETS];
+        add(snapshot, buckets.get());
+        AtomicReferenceArray<AtomicLongArray> striped = stripes.get();
+        if (striped != null) {
+            for (int s = 0; s < striped.length(); s++) {
+                add(snapshot, striped.get(s));
+            }
+        }
+        return snapshot;
+    }
+
+    private static void add(long[] snapshot, AtomicLongArray counts) {
+        if (counts == null) return;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] += counts.get(i);
+        }
+    }
+
+    static int index(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) nanos;
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) return BUCKETS - 1;
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) return index;
+        if (index == BUCKETS - 1) return Long.MAX_VALUE;
+        int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+        int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -0,0 +1,167 @@
+package retromock;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+import org.hamcrest.core.AnyOf;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Decides what the 404 {@linkplain retrofit.client.Response} of a {@linkplain MockClient} tells about a request
+ * that did not match any route.
+ *
+ * The body of the response is rendered lazily, i.e. only when it is actually read, so unmatched requests
+ * stay cheap as long as nobody looks at the diagnostics.
+ */
+public abstract class MissPolicy {
+
+    private static final String MIME_TYPE = "text/plain; charset=UTF-8";
+
+    /**
+     * Describes every registered route. This is the default.
+     */
+    public static MissPolicy describeAll() {
+        return new MissPolicy() {
+            @Override
+            void describe(Request request, List<MockClient.Route> routes, Description description) {
+                List<Matcher<? super Request>> matchers = new ArrayList<>(routes.size());
+                for (MockClient.Route route : routes) {
+                    matchers.add(route.requestMatcher);
+                }
+                description.appendText("No matching route found. expected:\n");
+                AnyOf.anyOf(matchers).describeTo(description);
+            }
+        };
+    }
+
+    /**
+     * Describes the {@code limit} routes that matched most of the request, together with why they did not match.
+     *
+     * @param limit maximum number of routes to describe
+     */
+    public static MissPolicy nearMisses(final int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive, got " + limit);
+        }
+        return new MissPolicy() {
+            @Override
+            void describe(final Request request, List<MockClient.Route> routes, Description description) {
+                List<NearMiss> nearMisses = new ArrayList<>(routes.size());
+                for (MockClient.Route route : routes) {
+                    nearMisses.add(new NearMiss(route, route.matchingConditions(request)));
+                }
+                Collections.sort(nearMisses, NearMiss.CLOSEST_FIRST);
+
+                description.appendText("No matching route found. closest routes:");
+                for (NearMiss nearMiss : nearMisses.subList(0, Math.min(limit, nearMisses.size()))) {
+                    description.appendText("\n")
+                            .appendDescriptionOf(nearMiss.route.requestMatcher)
+                            .appendText("\n  but: ");
+                    nearMiss.route.requestMatcher.describeMismatch(request, description);
+                }
+            }
+        };
+    }
+
+    /**
+     * Only states that no route matched, without describing any route.
+     */
+    public static MissPolicy minimal() {
+        return new MissPolicy() {
+            @Override
+            void describe(Request request, List<MockClient.Route> routes, Description description) {
+                description.appendText("No matching route found for ")
+                        .appendText(request.getMethod())
+                        .appendText(" ")
+                        .appendText(request.getUrl());
+            }
+        };
+    }
+
+    abstract void describe(Request request, List<MockClient.Route> routes, Description description);
+
+    Response respond(Request request, List<MockClient.Route> routes) {
+        return new Response(
+                request.getUrl(),
+                404,
+                "No route matched",
+                Collections.<Header>emptyList(),
+                new LazyDescription(this, request, routes)
+        );
+    }
+
+    private static class NearMiss {
+        static final Comparator<NearMiss> CLOSEST_FIRST = new Comparator<NearMiss>() {
+            @Override
+            public int compare(NearMiss a, NearMiss b) {
+                return Integer.compare(b.matchingConditions, a.matchingConditions);
+            }
+        };
+
+        final MockClient.Route route;
+        final int matchingConditions;
+
+        NearMiss(MockClient.Route route, int matchingConditions) {
+            this.route = route;
+            this.matchingConditions = matchingConditions;
+        }
+    }
+
+    /**
+     * Response body that renders the description of the miss on first access.
+     */
+    private static class LazyDescription implements TypedInput {
+
+        private final MissPolicy policy;
+        private final Request request;
+        private final List<MockClient.Route> routes;
+        private volatile byte[] bytes;
+
+        LazyDescription(MissPolicy policy, Request request, List<MockClient.Route> routes) {
+            this.policy = policy;
+            this.request = request;
+            this.routes = routes;
+        }
+
+        private byte[] bytes() {
+            byte[] result = bytes;
+            if (result == null) {
+                StringDescription description = new StringDescription();
+                policy.describe(request, routes, description);
+                bytes = result = description.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            return result;
+        }
+
+        @Override
+        public String mimeType() {
+            return MIME_TYPE;
+        }
+
+        @Override
+        public long length() {
+            return bytes().length;
+        }
+
+        @Override
+        public InputStream in() {
+            return new ByteArrayInputStream(bytes());
+        }
+
+        @Override
+        public String toString() {
+            return new String(bytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -1,58 +1,113 @@
 package retromock;
 
 import org.hamcrest.*;
-import org.hamcrest.core.AnyOf;
 import retrofit.client.Client;
 import retrofit.client.Header;
 import retrofit.client.Request;
 import retrofit.client.Response;
-import retrofit.mime.TypedString;
+import retromock.matchers.IsHeader;
 import retromock.matchers.IsRequestWithMethod;
 import retromock.matchers.IsRequestWithUrl;
+import retromock.matchers.RequestView;
+import retromock.parser.CachedFixture;
 import retromock.parser.HttpParser;
+import retromock.parser.ResponseTemplate;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
 
 import static org.hamcrest.core.AllOf.allOf;
 import static retromock.matchers.IsHeader.header;
 import static retromock.matchers.IsRequestWithHeaders.withHeaders;
 
+/**
+ * A {@linkplain retrofit.client.Client} answering requests from a table of routes.
+ *
+ * The routes are kept in an immutable snapshot that is replaced atomically whenever routes are added, replaced or
+ * removed through the {@linkplain Provider}, so routes can be changed while requests are executed on other threads.
+ * Requests never wait for changes and always see either the old or the new routes.
+ */
 public class MockClient implements Client {
-    
-    private final List<Route> routes;
 
-    private MockClient(List<Route> routes) {
-        this.routes = routes;
+    private final AtomicReference<RouteTable> table;
+    private final ClientMetrics metrics;
+    private volatile RequestJournal journal =
+            new RequestJournal(RequestJournal.DEFAULT_CAPACITY, RequestJournal.DEFAULT_MAX_BODY_BYTES);
+    private volatile Client fallback;
+
+    private MockClient(AtomicReference<RouteTable> table) {
+        this.table = table;
+        this.metrics = new ClientMetrics(table);
     }
 
     @Override
     public Response execute(Request request) throws IOException {
-        List<Matcher<? super Request>> unmatchedRoutes = new LinkedList<>();
-        for (Route route : routes) {
-            if (route.requestMatcher.matches(request)) return route.response.createFrom(request);
-            unmatchedRoutes.add(route.requestMatcher);
-        }
-        StringDescription description = new StringDescription();
-        AnyOf.anyOf(unmatchedRoutes).describeTo(description);
-        return new Response(
-                request.getUrl(),
-                404,
-                "No route matched",
-                Collections.<Header>emptyList(), 
-                new TypedString("No matching route found. expected:\n" + description.toString())
-        );
+        RouteTable current = table.get();
+        try (RequestView.Scope scope = RequestView.bind(request)) {
+            boolean measured = metrics.enabled;
+            long start = measured ? System.nanoTime() : 0;
+            Route matched = current.index().find(request);
+            if (measured) {
+                metrics.dispatchTime.record(System.nanoTime() - start);
+                metrics.requests.increment();
+            }
+            journal.record(request, matched);
+            if (matched == null) {
+                if (measured) metrics.misses.increment();
+                Client fallback = this.fallback;
+                if (fallback != null) return fallback.execute(request);
+                return current.missPolicy.respond(request, current.routes);
+            }
+            if (matched.pathTemplate != null) {
+                matched.pathTemplate.bind(scope.view());
+            }
+            if (!measured) {
+                return matched.response.createFrom(request);
+            }
+            matched.metrics.hits.increment();
+            long rendering = System.nanoTime();
+            try {
+                return matched.response.createFrom(request);
+            } finally {
+                matched.metrics.renderTime.record(System.nanoTime() - rendering);
+            }
+        }
+    }
+
+    /**
+     * Returns the metrics of this client and its routes.
+     */
+    public ClientMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Returns the journal of the requests executed by this client, to verify how routes were called.
+     */
+    public RequestJournal journal() {
+        return journal;
     }
 
     public static Provider when() { return new Provider(); }
-    
+
+    /**
+     * Registers routes for a {@linkplain MockClient}. All methods are safe to call while the client
+     * executes requests; each change becomes visible to requests started after it.
+     */
     public static class Provider implements Client.Provider {
 
-        final List<Route> routes = new LinkedList<>();
+        private final AtomicReference<RouteTable> table = new AtomicReference<>(RouteTable.EMPTY);
+        private final MockClient client = new MockClient(table);
 
         public RouteBuilder aRequest() { return new RouteBuilder(); }
 
@@ -74,28 +129,285 @@ public class MockClient implements Client {
 
         public Provider when() { return this; }
 
+        /**
+         * Selects how unmatched requests are described in the body of the 404 response.
+         * Defaults to {@link MissPolicy#describeAll()}.
+         */
+        public Provider onMiss(MissPolicy missPolicy) {
+            RouteTable current;
+            do {
+                current = table.get();
+            } while (!table.compareAndSet(current, current.with(missPolicy)));
+            return this;
+        }
+
+        /**
+         * Passes requests that match no route on to {@code client} instead of answering them with a 404,
+         * e.g. to a {@linkplain FixtureRecorder} recording fixtures from a real API.
+         *
+         * @param client the client for unmatched requests, {@code null} to answer them with a 404 again
+         */
+        public Provider proxyMissesTo(Client client) {
+            this.client.fallback = client;
+            return this;
+        }
+
+        /**
+         * Replaces the {@linkplain MockClient#journal() journal} of the client with an empty one keeping the
+         * latest {@code capacity} requests, with at most {@code maxBodyBytes} of each body. Defaults to
+         * {@value RequestJournal#DEFAULT_CAPACITY} requests with {@value RequestJournal#DEFAULT_MAX_BODY_BYTES} bytes.
+         *
+         * @param capacity number of requests to keep, {@code 0} to record nothing
+         * @param maxBodyBytes number of body bytes to keep per request, {@code 0} to record no bodies
+         */
+        public Provider journal(int capacity, int maxBodyBytes) {
+            client.journal = new RequestJournal(capacity, maxBodyBytes);
+            return this;
+        }
+
+        /**
+         * Starts or stops recording the {@linkplain MockClient#metrics() metrics} of the client, which are recorded
+         * by default, see {@linkplain ClientMetrics#setEnabled(boolean)}.
+         */
+        public Provider metrics(boolean enabled) {
+            client.metrics.setEnabled(enabled);
+            return this;
+        }
+
+        /**
+         * Removes the route registered with {@linkplain RouteBuilder#named(String) name}.
+         *
+         * @return {@code true} if there was such a route
+         */
+        public boolean remove(String name) {
+            RouteTable current;
+            RouteTable updated;
+            do {
+                current = table.get();
+                updated = current.without(name);
+            } while (!table.compareAndSet(current, updated));
+            return updated != current;
+        }
+
+        /**
+         * Returns the {@linkplain MockClient} serving the routes of this provider.
+         * This is always the same client, which sees all later changes to the routes.
+         */
         @Override public MockClient get() {
-            return new MockClient(routes);
+            table.get().index(); // build the index, with the prefilters of all patterns, before the first request
+            return client;
+        }
+
+        /**
+         * Registers a route for every fixture in {@code directory}, see {@linkplain retromock.parser.HttpParser}.
+         *
+         * The routes are taken from a {@code routes.txt} manifest in the directory, with lines like
+         * {@code GET /users/42 users/42.http}, or, without a manifest, from the directory layout:
+         * {@code users/42/GET.http} answers {@code GET /users/42}. All fixtures are parsed in parallel
+         * before any route is registered, and the routes are then registered at once.
+         *
+         * @throws IOException listing every fixture that could not be loaded as a suppressed exception;
+         *                     no route is registered in that case
+         */
+        public Provider importFixtures(Path directory) throws IOException {
+            List<Route> imported = new ArrayList<>();
+            for (FixtureImporter.Entry entry : FixtureImporter.load(directory)) {
+                imported.add(aRequest()
+                        .withMethod(entry.method)
+                        .withPath(entry.path)
+                        .build(ResponseFactory.fromFixture(entry.fixture)));
+            }
+            RouteTable current;
+            do {
+                current = table.get();
+            } while (!table.compareAndSet(current, current.withAll(imported)));
+            return this;
+        }
+
+        /**
+         * Registers a route for every fixture in a {@linkplain FixtureArchive fixture archive}. The archive is
+         * memory-mapped and the fixtures are served from it without being parsed.
+         *
+         * @throws IOException if the archive cannot be opened; no route is registered in that case
+         */
+        public Provider importArchive(Path archive) throws IOException {
+            List<Route> imported = new ArrayList<>();
+            for (final FixtureArchive.Entry entry : FixtureArchive.open(archive).entries()) {
+                imported.add(aRequest()
+                        .withMethod(entry.method())
+                        .withPath(entry.path())
+                        .build(new ResponseFactory() {
+                            @Override
+                            public Response createFrom(Request request) {
+                                return entry.template().render(request);
+                            }
+                        }));
+            }
+            RouteTable current;
+            do {
+                current = table.get();
+            } while (!table.compareAndSet(current, current.withAll(imported)));
+            return this;
+        }
+
+        private void add(Route route) {
+            RouteTable current;
+            do {
+                current = table.get();
+            } while (!table.compareAndSet(current, current.with(route)));
         }
 
         public class RouteBuilder {
             final List<Matcher<? super Request>> matchers = new LinkedList<>();
+            final List<Matcher<? super Request>> unkeyedMatchers = new LinkedList<>();
+            String name;
+            String method;
+            String path;
+            String headerName;
+            String headerValue;
+            String queryName;
+            String queryValue;
+            Pattern pathPattern;
+            IsRequestWithUrl.PathTemplate pathTemplate;
+            Latency latency;
+            long bytesPerSecond;
+            boolean compressed;
+
+            /**
+             * Names the route. Registering a route with the name of an existing route replaces that route
+             * in place, and named routes can be {@linkplain Provider#remove(String) removed}.
+             */
+            public RouteBuilder named(String name) {
+                this.name = name;
+                return this;
+            }
 
             public RouteBuilder matching(Matcher<? super Request> requestMatcher) {
                 matchers.add(requestMatcher);
+                unkeyedMatchers.add(requestMatcher);
+                if (pathPattern == null && requestMatcher instanceof IsRequestWithUrl.PathMatching) {
+                    pathPattern = ((IsRequestWithUrl.PathMatching) requestMatcher).pattern();
+                }
                 return this;
             }
 
             public RouteBuilder withMethod(String method) {
-                return matching(IsRequestWithMethod.withMethod(method));
+                if (this.method != null) {
+                    return matching(IsRequestWithMethod.withMethod(method));
+                }
+                this.method = method;
+                matchers.add(IsRequestWithMethod.withMethod(method));
+                return this;
             }
 
             public RouteBuilder withHeader(String headerName, Matcher<String> headerValue) {
-                return matching(withHeaders(header(headerName, headerValue)));
+                return withHeader(header(headerName, headerValue));
+            }
+
+            public RouteBuilder withHeader(String headerName, String headerValue) {
+                return withHeader(header(headerName, headerValue));
+            }
+
+            /**
+             * Requires a header matching {@code header}, e.g. {@linkplain IsHeader#basicAuth(String, String)}.
+             * The first header with a literal value, like {@code withHeader("x-tenant", "acme")}, is a key of the
+             * route, so requests without that header value never evaluate it.
+             */
+            public RouteBuilder withHeader(Matcher<Header> header) {
+                Matcher<Request> matcher = withHeaders(header);
+                if (this.headerName == null && header instanceof IsHeader.NamedHeader
+                        && ((IsHeader.NamedHeader) header).literal() != null) {
+                    this.headerName = ((IsHeader.NamedHeader) header).name();
+                    this.headerValue = ((IsHeader.NamedHeader) header).literal();
+                    matchers.add(matcher);
+                    return this;
+                }
+                return matching(matcher);
+            }
+
+            public RouteBuilder withQuery(String name, Matcher<String> value) {
+                return matching(IsRequestWithUrl.withQuery(name, value));
+            }
+
+            /**
+             * Requires the query parameter {@code name} with the value {@code value}, both URL-decoded. The first
+             * such parameter is a key of the route, so e.g. routes told apart by {@code ?type=} are looked up
+             * instead of scanned. A {@code null} value requires the parameter without a value, which is matched
+             * instead.
+             */
+            public RouteBuilder withQuery(String name, String value) {
+                if (this.queryName != null || value == null) {
+                    return matching(IsRequestWithUrl.withQuery(name, value));
+                }
+                this.queryName = name;
+                this.queryValue = value;
+                matchers.add(IsRequestWithUrl.withQuery(name, value));
+                return this;
+            }
+
+            /**
+             * Requires the whole path to match {@code regex}. The literal text of the pattern, like the
+             * {@code /users/} in {@code /users/\d+}, is used to skip the route for other paths without running
+             * the pattern.
+             */
+            public RouteBuilder withPathMatching(String regex) {
+                return matching(IsRequestWithUrl.withPathMatching(regex));
+            }
+
+            /**
+             * Requires the path to match {@code template}, e.g. {@code /users/{id}/orders}, see
+             * {@linkplain IsRequestWithUrl#withPathTemplate(String)}. The variables are available to the response as
+             * {@linkplain RequestView#pathVariables()} and in fixtures as {@code ${path.id}}. Where templates of
+             * routes overlap, the template with a literal segment at the first segment they differ in wins, e.g.
+             * {@code /users/me} over {@code /users/{id}}, no matter which route was registered first.
+             */
+            public RouteBuilder withPathTemplate(String template) {
+                IsRequestWithUrl.PathTemplate matcher = IsRequestWithUrl.withPathTemplate(template);
+                if (this.path != null || this.pathTemplate != null) {
+                    return matching(matcher);
+                }
+                this.pathTemplate = matcher;
+                matchers.add(matcher);
+                return this;
             }
 
             public RouteBuilder withPath(String url) {
-                return matching(IsRequestWithUrl.withPath(url));
+                if (this.path != null) {
+                    return matching(IsRequestWithUrl.withPath(url));
+                }
+                this.path = url;
+                matchers.add(IsRequestWithUrl.withPath(url));
+                return this;
+            }
+
+            /**
+             * Makes the route answer after a latency sampled for every request. The latency includes the time it
+             * takes to create the response; the thread executing the request waits for the rest of it.
+             */
+            public RouteBuilder delayedBy(Latency latency) {
+                this.latency = latency;
+                return this;
+            }
+
+            /**
+             * Makes the body of the responses of the route readable at most at {@code bytesPerSecond}.
+             * The thread reading the body waits whenever it gets ahead.
+             */
+            public RouteBuilder throttledTo(long bytesPerSecond) {
+                if (bytesPerSecond <= 0) {
+                    throw new IllegalArgumentException("bytesPerSecond must be positive, got " + bytesPerSecond);
+                }
+                this.bytesPerSecond = bytesPerSecond;
+                return this;
+            }
+
+            /**
+             * Serves the bodies of the route gzip- or deflate-encoded, as accepted by the request, see
+             * {@linkplain ResponseFactory#compressed(ResponseFactory)}.
+             */
+            public RouteBuilder compressed() {
+                this.compressed = true;
+                return this;
             }
 
             public Provider thenReturn(Response response) {
@@ -111,22 +423,127 @@ public class MockClient implements Client {
             }
 
             public Provider thenReturn(ResponseFactory response) {
-                Matcher<Request> requestMatcher = allOf(matchers);
-                routes.add(Route.of(requestMatcher, response));
+                add(build(response));
                 return Provider.this;
             }
+
+            /**
+             * Answers the first request with {@code first}, the following ones with {@code then} in order, and all
+             * requests after that with the last response, see
+             * {@linkplain ResponseFactory#sequence(ResponseFactory...)}.
+             */
+            public Provider thenReturn(Response first, Response... then) {
+                ResponseFactory[] factories = new ResponseFactory[then.length + 1];
+                factories[0] = ResponseFactory.always(first);
+                for (int i = 0; i < then.length; i++) {
+                    factories[i + 1] = ResponseFactory.always(then[i]);
+                }
+                return thenReturn(ResponseFactory.sequence(factories));
+            }
+
+            /**
+             * Like {@linkplain #thenReturn(Response, Response...)}, with factories.
+             */
+            public Provider thenReturn(ResponseFactory first, ResponseFactory... then) {
+                ResponseFactory[] factories = new ResponseFactory[then.length + 1];
+                factories[0] = first;
+                System.arraycopy(then, 0, factories, 1, then.length);
+                return thenReturn(ResponseFactory.sequence(factories));
+            }
+
+            Route build(ResponseFactory response) {
+                Route route = new Route();
+                route.conditions = new ArrayList<>(matchers);
+                route.requestMatcher = allOf(matchers);
+                List<Matcher<? super Request>> unkeyed = new ArrayList<>(unkeyedMatchers);
+                route.method = method;
+                route.path = path;
+                route.pathTemplate = pathTemplate;
+                // the index uses one key besides method and path, in this order, so the others are matched instead
+                if (pathTemplate != null && headerName != null) {
+                    unkeyed.add(withHeaders(header(headerName, headerValue)));
+                } else {
+                    route.headerName = headerName;
+                    route.headerValue = headerValue;
+                }
+                if ((pathTemplate != null || headerName != null) && queryName != null) {
+                    unkeyed.add(IsRequestWithUrl.withQuery(queryName, queryValue));
+                } else {
+                    route.queryName = queryName;
+                    route.queryValue = queryValue;
+                }
+                route.unkeyedMatcher = unkeyed.isEmpty() ? null : allOf(unkeyed);
+                if (path == null && pathPattern != null) {
+                    PathPrefilter prefilter = PathPrefilter.of(pathPattern);
+                    route.pathPrefilter = prefilter == PathPrefilter.NONE ? null : prefilter;
+                }
+                route.name = name;
+                route.metrics = new RouteMetrics(name, route.requestMatcher);
+                route.clientMetrics = client.metrics;
+                if (compressed) {
+                    response = ResponseFactory.compressed(response);
+                }
+                route.response = latency == null && bytesPerSecond == 0
+                        ? response
+                        : ResponseFactory.simulating(response, latency, bytesPerSecond);
+                return route;
+            }
         }
 
     }
-    
-    private static class Route {
+
+    static class Route {
+        /** optional name to replace or remove the route, {@code null} if unnamed */
+        String name;
+        /** the individual matchers this route was declared with */
+        List<Matcher<? super Request>> conditions;
+        /** matches everything this route was declared with */
         Matcher<Request> requestMatcher;
+        /** matches everything except the literal keys the route is indexed by, {@code null} if nothing */
+        Matcher<Request> unkeyedMatcher;
+        String method;
+        String path;
+        /** a header the route requires with the literal {@link #headerValue}, {@code null} if none */
+        String headerName;
+        String headerValue;
+        /** a query parameter the route requires with the literal {@link #queryValue}, {@code null} if none */
+        String queryName;
+        String queryValue;
+        /** literal text the path must contain to match, {@code null} if the path is not matched by a pattern */
+        PathPrefilter pathPrefilter;
+        /** the template the route is indexed by, whose variables are bound to the request, {@code null} if none */
+        IsRequestWithUrl.PathTemplate pathTemplate;
         ResponseFactory response;
-        private static Route of(Matcher<Request> requestMatcher, ResponseFactory response) {
-            Route res = new Route();
-            res.requestMatcher = requestMatcher;
-            res.response = response;
-            return res;
+        RouteMetrics metrics;
+        /** the metrics of the client the route belongs to, which decide if the route records its metrics */
+        ClientMetrics clientMetrics;
+
+        boolean matchesRemaining(Request request) {
+            return matches(request, unkeyedMatcher);
+        }
+
+        boolean matches(Request request) {
+            return matches(request, requestMatcher);
+        }
+
+        private boolean matches(Request request, Matcher<Request> matcher) {
+            if (!clientMetrics.enabled) return matcher == null || matcher.matches(request);
+            metrics.attempts.increment();
+            if (matcher == null) return true;
+            long start = System.nanoTime();
+            try {
+                return matcher.matches(request);
+            } finally {
+                metrics.matchTime.record(System.nanoTime() - start);
+            }
+        }
+
+        int matchingConditions(Request request) {
+            int result = 0;
+            for (Matcher<? super Request> condition : conditions) {
+                if (condition.matches(request)) result++;
+            }
+            return result;
         }
     }
 
@@ -141,19 +558,186 @@ public class MockClient implements Client {
         }
 
         public static ResponseFactory fromFile(final File file) {
+            return fromFile(file.toPath());
+        }
+
+        /**
+         * Serves the fixture in the given file, see {@linkplain HttpParser}.
+         * The file is parsed once and only parsed again when it changes.
+         */
+        public static ResponseFactory fromFile(final Path path) {
+            return fromFixture(new CachedFixture(path));
+        }
+
+        static ResponseFactory fromFixture(final CachedFixture fixture) {
             return new ResponseFactory() {
                 @Override
                 public Response createFrom(Request request) throws IOException {
-                    return HttpParser.parse(request.getUrl(), file);
+                    return fixture.render(request);
                 }
             };
         }
 
-        public static ResponseFactory fromFile(final Path path) {
+        /**
+         * Serves a compiled template, filling in the placeholders that refer to the request, see {@linkplain HttpParser}.
+         */
+        public static ResponseFactory fromTemplate(final ResponseTemplate template) {
+            return new ResponseFactory() {
+                @Override
+                public Response createFrom(Request request) {
+                    return template.render(request);
+                }
+            };
+        }
+
+        /**
+         * Serves the fixture in the given file like {@linkplain #fromFile(Path)}, but streams the body from the file
+         * every time it is read instead of keeping it on the heap. Meant for large bodies.
+         */
+        public static ResponseFactory streamFromFile(final Path path) {
+            return fromFixture(new CachedFixture(path, true));
+        }
+
+        /**
+         * Answers with {@code 200 OK} and {@code body}, which is generated while the client reads it, see
+         * {@linkplain SyntheticBody}. The response declares the length of the body in {@code Content-Length}.
+         */
+        public static ResponseFactory synthetic(final SyntheticBody body) {
+            final List<Header> headers = Collections.unmodifiableList(Arrays.asList(
+                    new Header("Content-Type", body.mimeType()),
+                    new Header("Content-Length", String.valueOf(body.length()))));
+            return new ResponseFactory() {
+                @Override
+                public Response createFrom(Request request) {
+                    return new Response(request.getUrl(), 200, "OK", headers, body);
+                }
+            };
+        }
+
+        /**
+         * Serves the bodies of {@code factory} in the content coding the {@code Accept-Encoding} header of the
+         * request prefers, {@code gzip} or {@code deflate}, with {@code Content-Encoding}, {@code Content-Length}
+         * and {@code Vary} set to match. Bodies already stored encoded, with a {@code Content-Encoding} header, are
+         * decoded for requests that do not accept their coding.
+         *
+         * Each body is encoded once per coding and cached for as long as {@code factory} returns the same body,
+         * e.g. a fixture without request placeholders until its file changes.
+         */
+        public static ResponseFactory compressed(ResponseFactory factory) {
+            return new Compression(factory);
+        }
+
+        /**
+         * Answers the {@code n}th request with the {@code n}th factory and all requests after the last factory with
+         * the last one, e.g. a 503 followed by 200s to test retries.
+         *
+         * Requests are counted with a single atomic increment when they reach the factory, without locks, so under
+         * concurrent calls every factory except the last is used by exactly one request; which one is decided by the
+         * order of the increments. Once the last factory is reached, the counter is only read.
+         */
+        public static ResponseFactory sequence(final ResponseFactory... factories) {
+            requireFactories(factories);
+            final int last = factories.length - 1;
+            final AtomicLong cursor = new AtomicLong();
+            return new ResponseFactory() {
+                @Override
+                public Response createFrom(Request request) throws IOException {
+                    long next = cursor.get();
+                    if (next < last) {
+                        next = cursor.getAndIncrement();
+                    }
+                    return factories[(int) Math.min(next, last)].createFrom(request);
+                }
+            };
+        }
+
+        /**
+         * Answers requests with the factories in turn, starting over after the last one, e.g. to rotate variants.
+         *
+         * Requests are counted with a single atomic increment, without locks, so under concurrent calls every run of
+         * {@code factories.length} consecutive increments uses each factory exactly once.
+         */
+        public static ResponseFactory cycle(final ResponseFactory... factories) {
+            requireFactories(factories);
+            final AtomicLong cursor = new AtomicLong();
+            return new ResponseFactory() {
+                @Override
+                public Response createFrom(Request request) throws IOException {
+                    long next = cursor.getAndIncrement() & Long.MAX_VALUE;
+                    return factories[(int) (next % factories.length)].createFrom(request);
+                }
+            };
+        }
+
+        /**
+         * Answers every request with a factory chosen at random, each with a probability proportional to its weight.
+         * Choices are independent and keep no shared state, so concurrent calls do not contend at all.
+         *
+         * @param weights one non-negative weight per factory, not all zero
+         */
+        public static ResponseFactory weighted(double[] weights, final ResponseFactory... factories) {
+            requireFactories(factories);
+            if (weights.length != factories.length) {
+                throw new IllegalArgumentException(
+                        "expected one weight per factory, got " + weights.length + " for " + factories.length);
+            }
+            final double[] cumulative = new double[weights.length];
+            double total = 0;
+            for (int i = 0; i < weights.length; i++) {
+                if (!(weights[i] >= 0) || Double.isInfinite(weights[i])) {
+                    throw new IllegalArgumentException("weights must be finite and non-negative, got " + weights[i]);
+                }
+                total += weights[i];
+                cumulative[i] = total;
+            }
+            if (total == 0) {
+                throw new IllegalArgumentException("at least one weight must be positive");
+            }
+            final double sum = total;
+            return new ResponseFactory() {
+                @Override
+                public Response createFrom(Request request) throws IOException {
+                    double point = ThreadLocalRandom.current().nextDouble(sum);
+                    int i = Arrays.binarySearch(cumulative, point);
+                    // the first factory whose range ends after the point, skipping factories without weight
+                    i = i < 0 ? -i - 1 : i + 1;
+                    while (i < cumulative.length - 1 && cumulative[i] <= point) i++;
+                    return factories[Math.min(i, cumulative.length - 1)].createFrom(request);
+                }
+            };
+        }
+
+        private static void requireFactories(ResponseFactory[] factories) {
+            if (factories.length == 0) {
+                throw new IllegalArgumentException("expected at least one factory");
+            }
+            for (ResponseFactory factory : factories) {
+                if (factory == null) throw new NullPointerException("factory");
+            }
+        }
+
+        /**
+         * Delays the responses of {@code factory} by {@code latency} and throttles their bodies to
+         * {@code bytesPerSecond}.
+         *
+         * @param latency {@code null} for no delay
+         * @param bytesPerSecond {@code 0} for no throttling
+         */
+        static ResponseFactory simulating(final ResponseFactory factory, final Latency latency,
+                                          final long bytesPerSecond) {
             return new ResponseFactory() {
                 @Override
                 public Response createFrom(Request request) throws IOException {
-                    return HttpParser.parse(request.getUrl(), path);
+                    long deadline = latency == null ? 0 : System.nanoTime() + latency.sampleNanos();
+                    Response response = factory.createFrom(request);
+                    if (latency != null) {
+                        PacedInput.awaitNanoTime(deadline);
+                    }
+                    if (bytesPerSecond == 0 || response.getBody() == null) {
+                        return response;
+                    }
+                    return new Response(response.getUrl(), response.getStatus(), response.getReason(),
+                            response.getHeaders(), new PacedInput(response.getBody(), bytesPerSecond));
                 }
             };
         }
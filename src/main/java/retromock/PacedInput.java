@@ -0,0 +1,110 @@
+package retromock;
+
+import retrofit.mime.TypedInput;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response body that can be read at most at a given number of bytes per second.
+ *
+ * There is no timer thread: every stream remembers when it was first read, and a read that gets ahead of the rate
+ * waits on the reading thread until the bytes read so far are due. Reads are cut into chunks of about
+ * {@value #CHUNKS_PER_SECOND}th of a second, so the rate is also kept for large buffers.
+ */
+class PacedInput implements TypedInput {
+
+    private static final int CHUNKS_PER_SECOND = 50;
+
+    private final TypedInput delegate;
+    private final long bytesPerSecond;
+
+    PacedInput(TypedInput delegate, long bytesPerSecond) {
+        this.delegate = delegate;
+        this.bytesPerSecond = bytesPerSecond;
+    }
+
+    @Override
+    public String mimeType() {
+        return delegate.mimeType();
+    }
+
+    @Override
+    public long length() {
+        return delegate.length();
+    }
+
+    @Override
+    public InputStream in() throws IOException {
+        return new PacedStream(delegate.in(), bytesPerSecond);
+    }
+
+    /**
+     * Waits on the current thread until {@link System#nanoTime()} reaches {@code deadline}.
+     *
+     * @throws InterruptedIOException if the thread is interrupted while waiting, with the interrupt flag set again
+     */
+    static void awaitNanoTime(long deadline) throws InterruptedIOException {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(remaining);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while simulating a slow route");
+            }
+        }
+    }
+
+    private static class PacedStream extends FilterInputStream {
+
+        private final long bytesPerSecond;
+        private final int chunk;
+        private long start;
+        private long read;
+
+        PacedStream(InputStream in, long bytesPerSecond) {
+            super(in);
+            this.bytesPerSecond = bytesPerSecond;
+            this.chunk = (int) Math.max(1, Math.min(Integer.MAX_VALUE, bytesPerSecond / CHUNKS_PER_SECOND));
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            if (read == 0) start = System.nanoTime();
+            int n = super.read(b, off, Math.min(len, chunk));
+            if (n > 0) {
+                read += n;
+                awaitNanoTime(start + (long) (read * (1e9 / bytesPerSecond)));
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(n, 4096)];
+            long skipped = 0;
+            while (skipped < n) {
+                int r = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+                if (r == -1) break;
+                skipped += r;
+            }
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package retromock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Literal text that every path matched by a regular expression must contain, to rule out routes declared with
+ * {@code withPathMatching} without running their pattern.
+ *
+ * The pattern is scanned once: literal characters outside of groups and character classes form runs, which are
+ * broken by anything else. As the whole path has to match, the runs at the start and the end of the pattern are a
+ * prefix and a suffix of every matching path, and the longest run in between is contained in every matching path.
+ * Patterns with flags, alternatives at the top level or escapes that are not understood here are not filtered at all.
+ */
+final class PathPrefilter {
+
+    /** accepts every path */
+    static final PathPrefilter NONE = new PathPrefilter("", "", "");
+
+    /** text every matching path starts with */
+    final String prefix;
+    /** text every matching path ends with */
+    final String suffix;
+    /** text every matching path contains */
+    final String required;
+
+    private PathPrefilter(String prefix, String suffix, String required) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.required = required;
+    }
+
+    static PathPrefilter of(Pattern pattern) {
+        if (pattern.flags() != 0) return NONE;
+        String regex = pattern.pattern();
+        StringBuilder run = new StringBuilder();
+        List<String> runs = new ArrayList<>();
+        boolean lastLiteral = false;
+        int depth = 0;
+        int end = regex.endsWith("$") && !regex.endsWith("\\$") ? regex.length() - 1 : regex.length();
+        for (int i = regex.startsWith("^") ? 1 : 0; i < end; i++) {
+            char c = regex.charAt(i);
+            char literal = 0;
+            switch (c) {
+                case '\\':
+                    if (++i == regex.length()) return NONE;
+                    char escaped = regex.charAt(i);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        if ("dDsSwWbBAGZzhHvVRXtnrfae".indexOf(escaped) == -1) return NONE;
+                    } else {
+                        literal = escaped;
+                    }
+                    break;
+                case '[':
+                    i = endOfClass(regex, i);
+                    if (i == -1) return NONE;
+                    break;
+                case '(':
+                    if (i + 1 < regex.length() && regex.charAt(i + 1) == '?'
+                            && (i + 2 == regex.length() || ":=!<>".indexOf(regex.charAt(i + 2)) == -1)) {
+                        return NONE; // embedded flags
+                    }
+                    depth++;
+                    break;
+                case ')':
+                    depth--;
+                    break;
+                case '|':
+                    if (depth == 0) return NONE;
+                    break;
+                case '?':
+                case '*':
+                case '{':
+                case '+':
+                    if (c == '{') {
+                        i = regex.indexOf('}', i);
+                        if (i == -1) return NONE;
+                    }
+                    if (depth == 0 && lastLiteral && c != '+') {
+                        run.setLength(run.length() - 1); // the character may be absent
+                    }
+                    if (i + 1 < regex.length() && (regex.charAt(i + 1) == '?' || regex.charAt(i + 1) == '+')) {
+                        i++; // lazy or possessive
+                    }
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    break;
+                default:
+                    literal = c;
+            }
+            boolean opened = c == '(' && depth == 1;
+            if (depth > 0 && !opened || c == ')') {
+                lastLiteral = false;
+                continue;
+            }
+            if (literal != 0) {
+                run.append(literal);
+                lastLiteral = true;
+            } else {
+                runs.add(run.toString());
+                run.setLength(0);
+                lastLiteral = false;
+            }
+        }
+        runs.add(run.toString());
+
+        String prefix = runs.get(0);
+        String suffix = runs.size() > 1 ? runs.get(runs.size() - 1) : "";
+        String required = "";
+        for (int i = 1; i < runs.size() - 1; i++) {
+            if (runs.get(i).length() > required.length()) required = runs.get(i);
+        }
+        if (prefix.isEmpty() && suffix.isEmpty() && required.isEmpty()) return NONE;
+        return new PathPrefilter(prefix, suffix, required);
+    }
+
+    boolean accepts(String path) {
+        return path.startsWith(prefix) && path.endsWith(suffix) && path.contains(required);
+    }
+
+    /**
+     * @return the position of the {@code ]} closing the character class starting at {@code start}, {@code -1} if none
+     */
+    private static int endOfClass(String regex, int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') i++;
+        if (i < regex.length() && regex.charAt(i) == ']') i++;
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == 'Q') return -1;
+                i++;
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return "prefix \"" + prefix + "\", suffix \"" + suffix + "\", containing \"" + required + "\"";
+    }
+}
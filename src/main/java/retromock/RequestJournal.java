@@ -0,0 +1,250 @@
+package retromock;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+import retrofit.client.Request;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedOutput;
+import retromock.matchers.RequestView;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+
+/**
+ * The most recent requests executed by a {@linkplain MockClient}, to verify how a route was called:
+ * <pre>
+ * client.journal().verify(1, allOf(withMethod("POST"), withPath("/orders")));
+ * </pre>
+ *
+ * The journal is a ring buffer of a fixed capacity that keeps the latest requests. Recording claims a position with
+ * a single atomic increment and stores the entry in its slot, so executing threads never wait for each other.
+ *
+ * Bodies are recorded up to a maximum size. A body that a matcher buffered already is copied up to that size, any
+ * other body is written only until that size is reached, so large uploads are never buffered for the journal.
+ * Matching recorded requests whose body was {@linkplain JournalEntry#isTruncated() truncated} can fail, e.g. when a
+ * JSON body is cut off; such entries do not match instead of failing the check.
+ *
+ * Reads see the entries that were stored when they ran; an entry whose request is still being recorded
+ * concurrently may be missing.
+ */
+public final class RequestJournal {
+
+    /** default number of recorded requests */
+    public static final int DEFAULT_CAPACITY = 1024;
+    /** default number of recorded body bytes per request */
+    public static final int DEFAULT_MAX_BODY_BYTES = 1024;
+
+    private final int capacity;
+    private final int maxBodyBytes;
+    private final AtomicReferenceArray<JournalEntry> slots;
+    private final AtomicLong next = new AtomicLong();
+    /** sequence of the oldest entry that was not cleared */
+    private final AtomicLong floor = new AtomicLong();
+
+    /**
+     * @param capacity number of requests to keep, {@code 0} to record nothing
+     * @param maxBodyBytes number of body bytes to keep per request, {@code 0} to record no bodies
+     */
+    RequestJournal(int capacity, int maxBodyBytes) {
+        if (capacity < 0 || maxBodyBytes < 0) {
+            throw new IllegalArgumentException("capacity and maxBodyBytes must not be negative, got "
+                    + capacity + " and " + maxBodyBytes);
+        }
+        this.capacity = capacity;
+        this.maxBodyBytes = maxBodyBytes;
+        this.slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    void record(Request request, MockClient.Route route) {
+        if (capacity == 0) return;
+        long timestamp = System.currentTimeMillis();
+        TypedOutput output = request.getBody();
+        byte[] body = null;
+        String mimeType = null;
+        long bodyLength = -1;
+        boolean truncated = false;
+        if (output != null) {
+            mimeType = output.mimeType();
+            bodyLength = output.length();
+            if (maxBodyBytes > 0) {
+                TypedByteArray buffered = output instanceof TypedByteArray
+                        ? (TypedByteArray) output
+                        : RequestView.of(request).bufferedBody();
+                if (buffered != null) {
+                    byte[] bytes = buffered.getBytes();
+                    bodyLength = bytes.length;
+                    truncated = bytes.length > maxBodyBytes;
+                    body = truncated ? Arrays.copyOf(bytes, maxBodyBytes) : bytes;
+                } else {
+                    BoundedOutputStream bounded = new BoundedOutputStream(maxBodyBytes, bodyLength);
+                    try {
+                        output.writeTo(bounded);
+                    } catch (IOException e) {
+                        // the limit was reached or the body cannot be written; keep what was written before
+                    }
+                    body = bounded.bytes();
+                    truncated = bounded.truncated;
+                    if (!truncated) bodyLength = body.length;
+                }
+            }
+        }
+        long sequence = next.getAndIncrement();
+        slots.set(slot(sequence),
+                new JournalEntry(sequence, timestamp, request, mimeType, body, bodyLength, truncated, route));
+    }
+
+    /**
+     * @return the recorded requests, oldest first
+     */
+    public List<JournalEntry> entries() {
+        long end = next.get();
+        long start = Math.max(floor.get(), end - capacity);
+        List<JournalEntry> result = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            JournalEntry entry = slots.get(slot(sequence));
+            if (entry != null && entry.sequence() == sequence) {
+                result.add(entry);
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * @return the recorded requests matching {@code matcher}, oldest first
+     */
+    public List<JournalEntry> find(Matcher<? super Request> matcher) {
+        List<JournalEntry> result = new ArrayList<>();
+        for (JournalEntry entry : entries()) {
+            if (matches(matcher, entry)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    public int count(Matcher<? super Request> matcher) {
+        return find(matcher).size();
+    }
+
+    /**
+     * Checks that exactly {@code times} recorded requests match {@code matcher}.
+     *
+     * @throws AssertionError if they do not
+     */
+    public void verify(int times, Matcher<? super Request> matcher) {
+        verify(equalTo(times), matcher);
+    }
+
+    /**
+     * Checks that the number of recorded requests matching {@code matcher} matches {@code times}.
+     *
+     * @throws AssertionError if it does not
+     */
+    public void verify(Matcher<? super Integer> times, Matcher<? super Request> matcher) {
+        List<JournalEntry> entries = entries();
+        int count = 0;
+        for (JournalEntry entry : entries) {
+            if (matches(matcher, entry)) count++;
+        }
+        if (times.matches(count)) return;
+
+        StringDescription description = new StringDescription();
+        description.appendText("Expected ").appendDescriptionOf(times)
+                .appendText(" requests matching ").appendDescriptionOf(matcher)
+                .appendText("\n     but: ").appendValue(count).appendText(" matched, recorded:");
+        for (JournalEntry entry : entries) {
+            description.appendText("\n  ").appendText(entry.toString());
+        }
+        long dropped = dropped();
+        if (dropped > 0) {
+            description.appendText("\n  (" + dropped + " older requests were dropped)");
+        }
+        throw new AssertionError(description.toString());
+    }
+
+    /**
+     * @return the number of requests recorded so far that no longer fit into the journal
+     */
+    public long dropped() {
+        return Math.max(0, next.get() - capacity - floor.get());
+    }
+
+    /**
+     * Forgets all requests recorded so far.
+     */
+    public void clear() {
+        long end = next.get();
+        long current;
+        while ((current = floor.get()) < end && !floor.compareAndSet(current, end)) {
+            // retry unless another thread cleared at least as much
+        }
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int maxBodyBytes() {
+        return maxBodyBytes;
+    }
+
+    private static boolean matches(Matcher<? super Request> matcher, JournalEntry entry) {
+        try {
+            return matcher.matches(entry.request());
+        } catch (RuntimeException e) {
+            // e.g. a JSON matcher on a body that was cut off
+            if (entry.isTruncated()) return false;
+            throw e;
+        }
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    /**
+     * Keeps the first bytes written to it and stops the writer once more than that was written.
+     */
+    private static final class BoundedOutputStream extends OutputStream {
+        private final int limit;
+        private byte[] buffer;
+        private int count;
+        boolean truncated;
+
+        BoundedOutputStream(int limit, long expectedLength) {
+            this.limit = limit;
+            this.buffer = new byte[expectedLength < 0 ? Math.min(limit, 256) : (int) Math.min(expectedLength, limit)];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int kept = Math.min(len, limit - count);
+            if (count + kept > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.min(limit, Math.max(count + kept, buffer.length * 2)));
+            }
+            System.arraycopy(b, off, buffer, count, kept);
+            count += kept;
+            if (kept < len) {
+                truncated = true;
+                throw new IOException("body exceeds " + limit + " bytes");
+            }
+        }
+
+        byte[] bytes() {
+            return count == buffer.length ? buffer : Arrays.copyOf(buffer, count);
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package retromock;
+
+import retrofit.client.Request;
+import retromock.matchers.IsRequestWithUrl;
+import retromock.matchers.RequestView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Dispatch index over the routes of a {@linkplain MockClient}.
+ *
+ * Routes declared with a literal method ({@code withMethod}) and/or a literal path ({@code withPath}) are bucketed
+ * by those keys, so a request only evaluates the routes that can possibly match it. Routes without any key
+ * (e.g. only opaque {@code matching(...)} matchers) are kept in a separate bucket that every request scans.
+ * Within a bucket, routes requiring a header or query parameter with a literal value ({@code withHeader(name, value)},
+ * {@code withQuery(name, value)}) are further bucketed by it, so e.g. routes per tenant, per credentials or per
+ * {@code ?type=} are looked up instead of scanned. Routes matching the path with a pattern ({@code withPathMatching})
+ * are bucketed by the literal prefix of the pattern in a trie, and skipped without running the pattern unless the
+ * path contains all literal text of the pattern, see {@linkplain PathPrefilter}. Routes with a path template
+ * ({@code withPathTemplate}) are kept in a trie of segments that is walked along the segments of the path; where
+ * templates overlap, literal segments are tried before variables.
+ * The candidates of all buckets are merged by registration order, so the first registered matching route still wins.
+ */
+class RouteIndex {
+
+    private static final int[] NONE = new int[0];
+
+    private final MockClient.Route[] routes;
+    private final Map<String, Map<String, Bucket>> byMethodAndPath;
+    private final Map<String, Bucket> byMethod;
+    private final Map<String, Bucket> byPath;
+    private final Bucket unkeyed;
+    /** whether finding candidates needs the parsed URI of the request */
+    private final boolean uriKeyed;
+
+    RouteIndex(List<MockClient.Route> routes) {
+        this.routes = routes.toArray(new MockClient.Route[routes.size()]);
+
+        Map<String, Map<String, Bucket.Builder>> byMethodAndPath = new HashMap<>();
+        Map<String, Bucket.Builder> byMethod = new HashMap<>();
+        Map<String, Bucket.Builder> byPath = new HashMap<>();
+        Bucket.Builder unkeyed = new Bucket.Builder();
+        for (int i = 0; i < this.routes.length; i++) {
+            MockClient.Route route = this.routes[i];
+            Bucket.Builder bucket;
+            if (route.method != null && route.path != null) {
+                Map<String, Bucket.Builder> paths = byMethodAndPath.get(route.method);
+                if (paths == null) {
+                    paths = new HashMap<>();
+                    byMethodAndPath.put(route.method, paths);
+                }
+                bucket = bucket(paths, route.path);
+            } else if (route.method != null) {
+                bucket = bucket(byMethod, route.method);
+            } else if (route.path != null) {
+                bucket = bucket(byPath, route.path);
+            } else {
+                bucket = unkeyed;
+            }
+            bucket.add(i, route);
+        }
+
+        this.byMethodAndPath = new HashMap<>();
+        for (Map.Entry<String, Map<String, Bucket.Builder>> entry : byMethodAndPath.entrySet()) {
+            this.byMethodAndPath.put(entry.getKey(), build(entry.getValue()));
+        }
+        this.byMethod = build(byMethod);
+        this.byPath = build(byPath);
+        this.unkeyed = unkeyed.build();
+        this.uriKeyed = !byMethodAndPath.isEmpty() || !byPath.isEmpty() || requiresUri(routes);
+    }
+
+    /**
+     * Finds the first registered route matching the request.
+     *
+     * @param request the request to dispatch
+     * @return the matching route or {@code null} if no route matched
+     */
+    MockClient.Route find(Request request) {
+        String method = request.getMethod();
+        String path = null;
+        if (uriKeyed) {
+            try {
+                path = RequestView.of(request).path();
+            } catch (IllegalArgumentException e) {
+                // let the route matchers decide how to treat URLs that we cannot index
+                return scan(request);
+            }
+        }
+
+        Candidates candidates = new Candidates(request, path);
+        Map<String, Bucket> paths = byMethodAndPath.get(method);
+        if (paths != null && path != null) {
+            candidates.addAll(paths.get(path));
+        }
+        candidates.addAll(byMethod.get(method));
+        if (path != null) {
+            candidates.addAll(byPath.get(path));
+        }
+        candidates.addAll(unkeyed);
+        return candidates.find();
+    }
+
+    private MockClient.Route scan(Request request) {
+        for (MockClient.Route route : routes) {
+            if (route.matches(request)) return route;
+        }
+        return null;
+    }
+
+    private static boolean requiresUri(List<MockClient.Route> routes) {
+        for (MockClient.Route route : routes) {
+            if (route.queryName != null || route.pathPrefilter != null || route.pathTemplate != null) return true;
+        }
+        return false;
+    }
+
+    private static Bucket.Builder bucket(Map<String, Bucket.Builder> buckets, String key) {
+        Bucket.Builder bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = new Bucket.Builder();
+            buckets.put(key, bucket);
+        }
+        return bucket;
+    }
+
+    private static Map<String, Bucket> build(Map<String, Bucket.Builder> buckets) {
+        Map<String, Bucket> result = new HashMap<>(buckets.size() * 2);
+        for (Map.Entry<String, Bucket.Builder> entry : buckets.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().build());
+        }
+        return result;
+    }
+
+    private static int[] toArray(List<Integer> bucket) {
+        int[] result = new int[bucket.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bucket.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * The routes with the same method and path keys, split by their path template, the literal header or query
+     * parameter they require, or by the prefix of their path pattern.
+     */
+    private static final class Bucket {
+        final int[] routes;
+        /** routes by lower-case header name and value, {@code null} if no route requires a literal header */
+        final Map<String, Map<String, int[]>> byHeader;
+        /** routes by query parameter name and value, {@code null} if no route requires a literal parameter */
+        final Map<String, Map<String, int[]>> byQuery;
+        /** routes by the literal prefix of their path pattern, {@code null} if no route has a prefilter */
+        final PrefixTrie byPathPrefix;
+        /** routes by their path template, {@code null} if no route has one */
+        final SegmentTrie byPathTemplate;
+
+        Bucket(int[] routes, Map<String, Map<String, int[]>> byHeader, Map<String, Map<String, int[]>> byQuery,
+               PrefixTrie byPathPrefix, SegmentTrie byPathTemplate) {
+            this.routes = routes;
+            this.byHeader = byHeader;
+            this.byQuery = byQuery;
+            this.byPathPrefix = byPathPrefix;
+            this.byPathTemplate = byPathTemplate;
+        }
+
+        static final class Builder {
+            private final List<Integer> routes = new ArrayList<>();
+            private final Map<String, Map<String, List<Integer>>> byHeader = new HashMap<>();
+            private final Map<String, Map<String, List<Integer>>> byQuery = new HashMap<>();
+            private PrefixTrie.Builder byPathPrefix;
+            private SegmentTrie.Builder byPathTemplate;
+
+            void add(int index, MockClient.Route route) {
+                if (route.pathTemplate != null) {
+                    if (byPathTemplate == null) byPathTemplate = new SegmentTrie.Builder();
+                    byPathTemplate.add(route.pathTemplate, 0, index);
+                } else if (route.headerName != null) {
+                    add(byHeader, route.headerName.toLowerCase(Locale.ENGLISH), route.headerValue, index);
+                } else if (route.queryName != null) {
+                    add(byQuery, route.queryName, route.queryValue, index);
+                } else if (route.pathPrefilter != null) {
+                    if (byPathPrefix == null) byPathPrefix = new PrefixTrie.Builder();
+                    byPathPrefix.add(route.pathPrefilter.prefix, 0, index);
+                } else {
+                    routes.add(index);
+                }
+            }
+
+            Bucket build() {
+                return new Bucket(toArray(routes), build(byHeader), build(byQuery),
+                        byPathPrefix == null ? null : byPathPrefix.build(),
+                        byPathTemplate == null ? null : byPathTemplate.build());
+            }
+
+            private static void add(Map<String, Map<String, List<Integer>>> buckets, String name, String value,
+                                    int index) {
+                Map<String, List<Integer>> values = buckets.get(name);
+                if (values == null) {
+                    values = new HashMap<>();
+                    buckets.put(name, values);
+                }
+                List<Integer> bucket = values.get(value);
+                if (bucket == null) {
+                    bucket = new ArrayList<>();
+                    values.put(value, bucket);
+                }
+                bucket.add(index);
+            }
+
+            private static Map<String, Map<String, int[]>> build(Map<String, Map<String, List<Integer>>> buckets) {
+                if (buckets.isEmpty()) return null;
+                Map<String, Map<String, int[]>> result = new HashMap<>(buckets.size() * 2);
+                for (Map.Entry<String, Map<String, List<Integer>>> named : buckets.entrySet()) {
+                    Map<String, int[]> values = new HashMap<>(named.getValue().size() * 2);
+                    for (Map.Entry<String, List<Integer>> value : named.getValue().entrySet()) {
+                        values.put(value.getKey(), toArray(value.getValue()));
+                    }
+                    result.put(named.getKey(), values);
+                }
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Routes by the literal prefix of their path pattern, one character per level. The routes of a path are those
+     * of the nodes along it.
+     */
+    private static final class PrefixTrie {
+        /** routes whose prefix ends at this node */
+        final int[] routes;
+        private final char[] keys;
+        private final PrefixTrie[] children;
+
+        PrefixTrie(int[] routes, char[] keys, PrefixTrie[] children) {
+            this.routes = routes;
+            this.keys = keys;
+            this.children = children;
+        }
+
+        PrefixTrie child(char c) {
+            int i = Arrays.binarySearch(keys, c);
+            return i < 0 ? null : children[i];
+        }
+
+        static final class Builder {
+            private final List<Integer> routes = new ArrayList<>();
+            private final TreeMap<Character, Builder> children = new TreeMap<>();
+
+            void add(String prefix, int depth, int route) {
+                if (depth == prefix.length()) {
+                    routes.add(route);
+                    return;
+                }
+                Builder child = children.get(prefix.charAt(depth));
+                if (child == null) {
+                    child = new Builder();
+                    children.put(prefix.charAt(depth), child);
+                }
+                child.add(prefix, depth + 1, route);
+            }
+
+            PrefixTrie build() {
+                char[] keys = new char[children.size()];
+                PrefixTrie[] built = new PrefixTrie[children.size()];
+                int i = 0;
+                for (Map.Entry<Character, Builder> child : children.entrySet()) {
+                    keys[i] = child.getKey();
+                    built[i++] = child.getValue().build();
+                }
+                return new PrefixTrie(toArray(routes), keys, built);
+            }
+        }
+    }
+
+    /**
+     * Routes by their path template, one segment per level, with the routes of a template at the node of its last
+     * segment.
+     */
+    private static final class SegmentTrie {
+        final int[] routes;
+        private final Map<String, SegmentTrie> literals;
+        /** the child for a variable segment, {@code null} if no template has one here */
+        private final SegmentTrie variable;
+
+        SegmentTrie(int[] routes, Map<String, SegmentTrie> literals, SegmentTrie variable) {
+            this.routes = routes;
+            this.literals = literals;
+            this.variable = variable;
+        }
+
+        /**
+         * Appends the routes of all templates matching {@code segments} to {@code result}, trying literal segments
+         * before variables. Without overlapping templates, this visits one node per segment.
+         */
+        void collect(List<String> segments, int depth, Candidates result) {
+            if (depth == segments.size()) {
+                result.append(routes);
+                return;
+            }
+            String segment = segments.get(depth);
+            SegmentTrie literal = literals.get(segment);
+            if (literal != null) {
+                literal.collect(segments, depth + 1, result);
+            }
+            if (variable != null && !segment.isEmpty()) {
+                variable.collect(segments, depth + 1, result);
+            }
+        }
+
+        static final class Builder {
+            private final List<Integer> routes = new ArrayList<>();
+            private final Map<String, Builder> literals = new HashMap<>();
+            private Builder variable;
+
+            void add(IsRequestWithUrl.PathTemplate template, int depth, int route) {
+                if (depth == template.size()) {
+                    routes.add(route);
+                    return;
+                }
+                String literal = template.literal(depth);
+                Builder child;
+                if (literal == null) {
+                    if (variable == null) variable = new Builder();
+                    child = variable;
+                } else {
+                    child = literals.get(literal);
+                    if (child == null) {
+                        child = new Builder();
+                        literals.put(literal, child);
+                    }
+                }
+                child.add(template, depth + 1, route);
+            }
+
+            SegmentTrie build() {
+                Map<String, SegmentTrie> built = new HashMap<>(literals.size() * 2);
+                for (Map.Entry<String, Builder> literal : literals.entrySet()) {
+                    built.put(literal.getKey(), literal.getValue().build());
+                }
+                return new SegmentTrie(toArray(routes), built, variable == null ? null : variable.build());
+            }
+        }
+    }
+
+    /**
+     * The route lists a request has to evaluate, merged by registration order. The list of path templates is in
+     * order of preference instead, and takes its turn whenever its next route was registered before the others.
+     */
+    private final class Candidates {
+        private final Request request;
+        private final String path;
+        private int[][] lists = new int[4][];
+        private int size;
+        /** the routes of matching path templates, in order of preference */
+        private int[] templates;
+        private int templateCount;
+
+        Candidates(Request request, String path) {
+            this.request = request;
+            this.path = path;
+        }
+
+        void addAll(Bucket bucket) {
+            if (bucket == null) return;
+            add(bucket.routes);
+            if (bucket.byHeader != null) {
+                RequestView view = RequestView.of(request);
+                for (Map.Entry<String, Map<String, int[]>> header : bucket.byHeader.entrySet()) {
+                    for (String value : view.headers(header.getKey())) {
+                        add(header.getValue().get(value));
+                    }
+                }
+            }
+            if (bucket.byQuery != null) {
+                RequestView view = RequestView.of(request);
+                for (Map.Entry<String, Map<String, int[]>> parameter : bucket.byQuery.entrySet()) {
+                    for (String value : view.query(parameter.getKey())) {
+                        add(parameter.getValue().get(value));
+                    }
+                }
+            }
+            if (bucket.byPathPrefix != null && path != null) {
+                PrefixTrie node = bucket.byPathPrefix;
+                for (int i = 0; node != null; i++) {
+                    add(node.routes);
+                    node = i < path.length() ? node.child(path.charAt(i)) : null;
+                }
+            }
+            if (bucket.byPathTemplate != null && path != null) {
+                templateCount = 0;
+                bucket.byPathTemplate.collect(RequestView.of(request).pathSegments(), 0, this);
+                if (templateCount > 0) add(Arrays.copyOf(templates, templateCount));
+            }
+        }
+
+        void append(int[] routes) {
+            if (routes.length == 0) return;
+            if (templates == null) {
+                templates = new int[Math.max(4, routes.length)];
+            } else if (templateCount + routes.length > templates.length) {
+                templates = Arrays.copyOf(templates, Math.max(templates.length * 2, templateCount + routes.length));
+            }
+            System.arraycopy(routes, 0, templates, templateCount, routes.length);
+            templateCount += routes.length;
+        }
+
+        private void add(int[] routes) {
+            if (routes == null || routes.length == 0) return;
+            if (size == lists.length) {
+                int[][] grown = new int[size * 2][];
+                System.arraycopy(lists, 0, grown, 0, size);
+                lists = grown;
+            }
+            lists[size++] = routes;
+        }
+
+        MockClient.Route find() {
+            int[] positions = new int[size];
+            while (true) {
+                int next = Integer.MAX_VALUE;
+                for (int i = 0; i < size; i++) {
+                    if (positions[i] < lists[i].length) next = Math.min(next, lists[i][positions[i]]);
+                }
+                if (next == Integer.MAX_VALUE) return null;
+                // a request repeating a header or parameter value adds a list twice, so skip the route in every list
+                for (int i = 0; i < size; i++) {
+                    if (positions[i] < lists[i].length && lists[i][positions[i]] == next) positions[i]++;
+                }
+
+                MockClient.Route route = routes[next];
+                if (route.pathPrefilter != null && (path == null || !route.pathPrefilter.accepts(path))) continue;
+                if (route.matchesRemaining(request)) return route;
+            }
+        }
+    }
+}
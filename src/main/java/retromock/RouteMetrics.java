@@ -0,0 +1,58 @@
+package retromock;
+
+import org.hamcrest.Matcher;
+import org.hamcrest.StringDescription;
+import retrofit.client.Request;
+
+/**
+ * What a route of a {@linkplain MockClient} did so far.
+ *
+ * An attempt is a request that was checked against the route, which only happens for requests the route is
+ * {@linkplain RouteIndex indexed} for. The match time is the time spent in the matchers of the route beyond its
+ * literal method and path, and the render time is the time its {@linkplain MockClient.ResponseFactory} took,
+ * including a simulated {@linkplain Latency latency}.
+ */
+public final class RouteMetrics {
+
+    private final String name;
+    private final Matcher<Request> matcher;
+    final StripedCounter attempts = new StripedCounter();
+    final StripedCounter hits = new StripedCounter();
+    final LatencyHistogram matchTime = new LatencyHistogram();
+    final LatencyHistogram renderTime = new LatencyHistogram();
+
+    RouteMetrics(String name, Matcher<Request> matcher) {
+        this.name = name;
+        this.matcher = matcher;
+    }
+
+    /**
+     * @return the {@linkplain MockClient.Provider.RouteBuilder#named(String) name} of the route, or {@code null}
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the description of all matchers of the route
+     */
+    public String getDescription() {
+        return StringDescription.toString(matcher);
+    }
+
+    public long getAttempts() {
+        return attempts.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public LatencyHistogram getMatchTime() {
+        return matchTime;
+    }
+
+    public LatencyHistogram getRenderTime() {
+        return renderTime;
+    }
+}
@@ -0,0 +1,96 @@
+package retromock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the routes of a {@linkplain MockClient} and how it answers unmatched requests.
+ *
+ * Changes create a new snapshot (copy-on-write), so a request is always dispatched against a complete route table,
+ * no matter what other threads register at the same time. The {@linkplain RouteIndex} of a snapshot is built
+ * on first use, so registering many routes in a row does not build intermediate indexes.
+ */
+class RouteTable {
+
+    static final RouteTable EMPTY = new RouteTable(Collections.<MockClient.Route>emptyList(), MissPolicy.describeAll());
+
+    final List<MockClient.Route> routes;
+    final MissPolicy missPolicy;
+    private volatile RouteIndex index;
+
+    private RouteTable(List<MockClient.Route> routes, MissPolicy missPolicy) {
+        this.routes = routes;
+        this.missPolicy = missPolicy;
+    }
+
+    RouteIndex index() {
+        RouteIndex result = index;
+        if (result == null) {
+            index = result = new RouteIndex(routes);
+        }
+        return result;
+    }
+
+    /**
+     * @return a table with {@code route} replacing the route with the same name, or appended if there is none
+     */
+    RouteTable with(MockClient.Route route) {
+        List<MockClient.Route> result = new ArrayList<>(routes.size() + 1);
+        boolean replaced = false;
+        for (MockClient.Route existing : routes) {
+            if (!replaced && route.name != null && route.name.equals(existing.name)) {
+                result.add(route);
+                replaced = true;
+            } else {
+                result.add(existing);
+            }
+        }
+        if (!replaced) {
+            result.add(route);
+        }
+        return new RouteTable(Collections.unmodifiableList(result), missPolicy);
+    }
+
+    /**
+     * @return a table with all {@code routes} added in order, each like {@linkplain #with(MockClient.Route)}
+     */
+    RouteTable withAll(List<MockClient.Route> routes) {
+        List<MockClient.Route> result = new ArrayList<>(this.routes.size() + routes.size());
+        result.addAll(this.routes);
+        Map<String, Integer> named = new HashMap<>();
+        for (int i = 0; i < result.size(); i++) {
+            String name = result.get(i).name;
+            if (name != null && !named.containsKey(name)) named.put(name, i);
+        }
+        for (MockClient.Route route : routes) {
+            Integer existing = route.name == null ? null : named.get(route.name);
+            if (existing != null) {
+                result.set(existing, route);
+            } else {
+                if (route.name != null) named.put(route.name, result.size());
+                result.add(route);
+            }
+        }
+        return new RouteTable(Collections.unmodifiableList(result), missPolicy);
+    }
+
+    /**
+     * @return a table without the route named {@code name}, or this table if there is no such route
+     */
+    RouteTable without(String name) {
+        List<MockClient.Route> result = new ArrayList<>(routes.size());
+        for (MockClient.Route existing : routes) {
+            if (!name.equals(existing.name)) {
+                result.add(existing);
+            }
+        }
+        return result.size() == routes.size() ? this : new RouteTable(Collections.unmodifiableList(result), missPolicy);
+    }
+
+    RouteTable with(MissPolicy missPolicy) {
+        return new RouteTable(routes, missPolicy);
+    }
+}
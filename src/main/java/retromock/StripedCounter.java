@@ -0,0 +1,62 @@
+package retromock;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A counter that stays cheap when many threads update it at once, like {@code java.util.concurrent.atomic.LongAdder},
+ * which is not available before Java 8.
+ *
+ * Updates go to a single base value until an update loses a race. From then on every thread adds to one of several
+ * cells, chosen by its thread id, each on its own cache line. Reading the counter sums the base and all cells, so it
+ * is not an atomic snapshot while updates are in flight.
+ */
+final class StripedCounter {
+
+    /** longs per cell, so that two cells never share a 64 byte cache line */
+    private static final int PADDING = 8;
+    /** number of cells, a power of two */
+    static final int STRIPES = stripes();
+
+    private final AtomicLong base = new AtomicLong();
+    private final AtomicReference<AtomicLongArray> cells = new AtomicReference<>();
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long value) {
+        AtomicLongArray current = cells.get();
+        if (current == null) {
+            long b = base.get();
+            if (base.compareAndSet(b, b + value)) return;
+            cells.compareAndSet(null, new AtomicLongArray(STRIPES * PADDING));
+            current = cells.get();
+        }
+        current.addAndGet(stripe() * PADDING, value);
+    }
+
+    long sum() {
+        long sum = base.get();
+        AtomicLongArray current = cells.get();
+        if (current != null) {
+            for (int i = 0; i < STRIPES; i++) {
+                sum += current.get(i * PADDING);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return the cell of the current thread
+     */
+    static int stripe() {
+        return (int) Thread.currentThread().getId() & (STRIPES - 1);
+    }
+
+    private static int stripes() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        return Integer.highestOneBit(Math.max(1, processors * 2 - 1)) << 1;
+    }
+}
@@ -0,0 +1,194 @@
+package retromock;
+
+import retrofit.mime.TypedInput;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A body of any size that is generated while it is read, to test how clients deal with huge responses without
+ * keeping them on the heap or on disk:
+ * <pre>
+ * MockClient.when().GET("/huge").thenReturn(ResponseFactory.synthetic(SyntheticBody.random(seed, 2L &lt;&lt; 30)));
+ * </pre>
+ *
+ * Every byte is computed from its position, so {@linkplain #in()} can be called any number of times, each stream
+ * yields the same bytes no matter how it is read, and skipping is free. Generating takes no memory beyond the buffer
+ * the caller reads into.
+ */
+public abstract class SyntheticBody implements TypedInput {
+
+    private final String mimeType;
+    private final long length;
+
+    SyntheticBody(String mimeType, long length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative, got " + length);
+        }
+        this.mimeType = mimeType;
+        this.length = length;
+    }
+
+    /**
+     * {@code length} bytes of {@code pattern}, repeated and cut off at the end.
+     */
+    public static SyntheticBody repeating(String mimeType, byte[] pattern, long length) {
+        if (pattern.length == 0 && length > 0) {
+            throw new IllegalArgumentException("pattern must not be empty");
+        }
+        final byte[] bytes = pattern.clone();
+        return new SyntheticBody(mimeType, length) {
+            @Override
+            void fill(long position, byte[] buffer, int offset, int count) {
+                int start = (int) (position % bytes.length);
+                while (count > 0) {
+                    int chunk = Math.min(count, bytes.length - start);
+                    System.arraycopy(bytes, start, buffer, offset, chunk);
+                    offset += chunk;
+                    count -= chunk;
+                    start = 0;
+                }
+            }
+        };
+    }
+
+    /**
+     * {@code length} pseudo-random bytes, which are the same for the same {@code seed}. Random bytes do not
+     * compress, so they also show the cost of bodies on the wire.
+     */
+    public static SyntheticBody random(final long seed, long length) {
+        return new SyntheticBody("application/octet-stream", length) {
+            @Override
+            void fill(long position, byte[] buffer, int offset, int count) {
+                long word = position >>> 3;
+                int shift = (int) (position & 7) * 8;
+                long bits = mix(seed + word * 0x9E3779B97F4A7C15L);
+                for (int i = 0; i < count; i++) {
+                    buffer[offset + i] = (byte) (bits >>> shift);
+                    shift += 8;
+                    if (shift == 64) {
+                        bits = mix(seed + ++word * 0x9E3779B97F4A7C15L);
+                        shift = 0;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * A JSON array of {@code length} bytes repeating {@code element}, e.g. {@code {"id": 1}}, as often as it fits.
+     * The remaining bytes are spaces before the closing bracket, so the array is valid JSON of exactly
+     * {@code length} bytes.
+     *
+     * @param length at least {@code 2}
+     */
+    public static SyntheticBody jsonArray(String element, long length) {
+        if (length < 2) {
+            throw new IllegalArgumentException("a JSON array takes at least 2 bytes, got " + length);
+        }
+        byte[] encoded = element.getBytes(StandardCharsets.UTF_8);
+        final byte[] unit = new byte[encoded.length + 1];
+        System.arraycopy(encoded, 0, unit, 0, encoded.length);
+        unit[encoded.length] = ',';
+        long elements = encoded.length == 0 ? 0 : (length - 1) / unit.length;
+        // the elements and the commas between them, without the last comma
+        final long content = elements == 0 ? 0 : elements * unit.length - 1;
+        final long end = length - 1;
+        return new SyntheticBody("application/json; charset=UTF-8", length) {
+            @Override
+            void fill(long position, byte[] buffer, int offset, int count) {
+                for (int i = 0; i < count; i++) {
+                    long p = position + i;
+                    byte b;
+                    if (p == 0) {
+                        b = '[';
+                    } else if (p == end) {
+                        b = ']';
+                    } else if (p <= content) {
+                        b = unit[(int) ((p - 1) % unit.length)];
+                    } else {
+                        b = ' ';
+                    }
+                    buffer[offset + i] = b;
+                }
+            }
+        };
+    }
+
+    /**
+     * Writes the {@code count} bytes starting at {@code position} into {@code buffer}.
+     */
+    abstract void fill(long position, byte[] buffer, int offset, int count);
+
+    @Override
+    public String mimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public InputStream in() {
+        return new InputStream() {
+            private long position;
+            private long mark;
+
+            @Override
+            public int read() {
+                if (position >= length) return -1;
+                byte[] b = new byte[1];
+                fill(position++, b, 0, 1);
+                return b[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int count) {
+                if (count == 0) return 0;
+                if (position >= length) return -1;
+                int n = (int) Math.min(count, length - position);
+                fill(position, buffer, offset, n);
+                position += n;
+                return n;
+            }
+
+            @Override
+            public long skip(long n) {
+                long skipped = Math.max(0, Math.min(n, length - position));
+                position += skipped;
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return (int) Math.min(Integer.MAX_VALUE, length - position);
+            }
+
+            @Override
+            public boolean markSupported() {
+                return true;
+            }
+
+            @Override
+            public synchronized void mark(int readLimit) {
+                mark = position;
+            }
+
+            @Override
+            public synchronized void reset() {
+                position = mark;
+            }
+        };
+    }
+
+    /**
+     * The finalizer of SplitMix64, which turns consecutive inputs into uncorrelated outputs.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -1,5 +1,7 @@
 package retromock.matchers;
 
+import org.hamcrest.BaseMatcher;
+import org.hamcrest.Description;
 import org.hamcrest.FeatureMatcher;
 import org.hamcrest.Matcher;
 import retrofit.client.Header;
@@ -7,6 +9,7 @@ import retrofit.client.Header;
 import javax.xml.bind.DatatypeConverter;
 
 import java.nio.charset.Charset;
+import java.util.List;
 
 import static org.hamcrest.core.AllOf.allOf;
 import static org.hamcrest.core.IsEqual.equalTo;
@@ -21,12 +24,70 @@ public class IsHeader {
     }
 
     public static Matcher<Header> header(String name, Matcher<String> value) {
-        return allOf(new HeaderName(equalToIgnoringCase(name)), new HeaderValue(value));
+        return new NamedHeader(name, value, null);
+    }
+
+    /**
+     * Matches a header with exactly the value {@code value}. Routes can be indexed by such headers.
+     */
+    public static Matcher<Header> header(String name, String value) {
+        return new NamedHeader(name, equalTo(value), value);
     }
 
     public static Matcher<Header> basicAuth(String username, String password) {
         final String headerVal = DatatypeConverter.printBase64Binary((username + ":" + password).getBytes(UTF_8));
-        return header("Authorization", equalTo("Basic " + headerVal));
+        return header("Authorization", "Basic " + headerVal);
+    }
+
+    /**
+     * Matches a header with a known name, so that it can be looked up by name, see {@linkplain RequestView#headers(String)}.
+     */
+    public static final class NamedHeader extends BaseMatcher<Header> {
+
+        final String name;
+        final Matcher<String> value;
+        private final String literal;
+        private final Matcher<Header> matcher;
+
+        NamedHeader(String name, Matcher<String> value, String literal) {
+            this.name = name;
+            this.value = value;
+            this.literal = literal;
+            this.matcher = allOf(new HeaderName(equalToIgnoringCase(name)), new HeaderValue(value));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the exact value this matcher requires, or {@code null} if it matches values with a matcher
+         */
+        public String literal() {
+            return literal;
+        }
+
+        boolean matchesAny(List<String> values) {
+            for (String v : values) {
+                if (literal != null ? literal.equals(v) : value.matches(v)) return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean matches(Object item) {
+            return matcher.matches(item);
+        }
+
+        @Override
+        public void describeMismatch(Object item, Description description) {
+            matcher.describeMismatch(item, description);
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            matcher.describeTo(description);
+        }
     }
 
     static class HeaderName extends FeatureMatcher<Header, String> {
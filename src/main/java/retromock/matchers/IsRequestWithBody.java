@@ -12,6 +12,13 @@ import java.nio.charset.StandardCharsets;
 
 import static org.hamcrest.CoreMatchers.allOf;
 
+/**
+ * Matches the body of a request.
+ *
+ * While a {@linkplain retromock.MockClient} executes a request, the body is buffered, decoded and parsed as JSON
+ * at most once, and JSON paths are evaluated at most once, no matter how many routes match on the body,
+ * see {@linkplain RequestView}.
+ */
 public class IsRequestWithBody extends FeatureMatcher<Request, TypedOutput> {
 
     @SafeVarargs
@@ -32,14 +39,11 @@ public class IsRequestWithBody extends FeatureMatcher<Request, TypedOutput> {
         return new FeatureMatcher<TypedOutput, JsonPath>(mimeType, "a request body with mime type", "mime type") {
             @Override
             protected JsonPath featureValueOf(TypedOutput actual) {
-                final int capacity = (int) Math.max(actual.length(), 32);
-                final ByteArrayOutputStream os = new ByteArrayOutputStream(capacity);
-                try {
-                    actual.writeTo(os);
-                    return JsonPath.from(new String(os.toByteArray(), StandardCharsets.UTF_8));
-                } catch (IOException e) {
-                    throw new IllegalStateException(e);
+                final RequestView view = RequestView.ofBody(actual);
+                if (view != null) {
+                    return view.json();
                 }
+                return JsonPath.from(new String(bytes(actual), StandardCharsets.UTF_8));
             }
         };
     }
@@ -47,19 +51,60 @@ public class IsRequestWithBody extends FeatureMatcher<Request, TypedOutput> {
     public static<T> Matcher<JsonPath> jsonPath(final String jsonPath, final Matcher<T> matcher) {
         return new FeatureMatcher<JsonPath, T>(matcher, "a json matching", "jsonPath") {
             @Override
+            @SuppressWarnings("unchecked")
             protected T featureValueOf(JsonPath actual) {
+                final RequestView view = RequestView.ofJson(actual);
+                if (view != null) {
+                    return (T) view.json(jsonPath);
+                }
                 return actual.get(jsonPath);
             }
         };
     }
 
+    public static Matcher<TypedOutput> rawBody(final Matcher<? super byte[]> bytes) {
+        return new FeatureMatcher<TypedOutput, byte[]>(bytes, "a request body with bytes", "bytes") {
+            @Override
+            protected byte[] featureValueOf(TypedOutput actual) {
+                return bytes(actual);
+            }
+        };
+    }
+
+    public static Matcher<TypedOutput> textBody(final Matcher<? super String> text) {
+        return new FeatureMatcher<TypedOutput, String>(text, "a request body with text", "text") {
+            @Override
+            protected String featureValueOf(TypedOutput actual) {
+                final RequestView view = RequestView.ofBody(actual);
+                if (view != null) {
+                    return view.bodyText();
+                }
+                return new String(bytes(actual), StandardCharsets.UTF_8);
+            }
+        };
+    }
+
     public IsRequestWithBody(Matcher<? super TypedOutput> subMatcher) {
         super(subMatcher, "a request with body", "body");
     }
 
     @Override
     protected TypedOutput featureValueOf(Request actual) {
-        final TypedOutput body = actual.getBody();
-        return body;
+        return RequestView.of(actual).body();
+    }
+
+    private static byte[] bytes(TypedOutput actual) {
+        final RequestView view = RequestView.ofBody(actual);
+        if (view != null) {
+            return view.bodyBytes();
+        }
+        final int capacity = (int) Math.max(actual.length(), 32);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(capacity);
+        try {
+            actual.writeTo(os);
+            return os.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
     }
 }
@@ -1,5 +1,6 @@
 package retromock.matchers;
 
+import org.hamcrest.Description;
 import org.hamcrest.FeatureMatcher;
 import org.hamcrest.Matcher;
 import retrofit.client.Header;
@@ -10,13 +11,46 @@ import java.util.List;
 import static org.hamcrest.core.IsCollectionContaining.hasItems;
 
 public class IsRequestWithHeaders extends FeatureMatcher<Request, List<Header>> {
+
+    /** header matchers that can be looked up by name, {@code null} if any matcher cannot */
+    private final IsHeader.NamedHeader[] namedHeaders;
+
     public IsRequestWithHeaders(Matcher<? super List<Header>> subMatcher) {
+        this(subMatcher, null);
+    }
+
+    private IsRequestWithHeaders(Matcher<? super List<Header>> subMatcher, IsHeader.NamedHeader[] namedHeaders) {
         super(subMatcher, "a request with headers", "headers");
+        this.namedHeaders = namedHeaders;
     }
 
     @SafeVarargs
     public static Matcher<Request> withHeaders(Matcher<Header>... headerMatchers) {
-        return new IsRequestWithHeaders(hasItems(headerMatchers));
+        IsHeader.NamedHeader[] namedHeaders = new IsHeader.NamedHeader[headerMatchers.length];
+        for (int i = 0; i < headerMatchers.length; i++) {
+            if (!(headerMatchers[i] instanceof IsHeader.NamedHeader)) {
+                return new IsRequestWithHeaders(hasItems(headerMatchers));
+            }
+            namedHeaders[i] = (IsHeader.NamedHeader) headerMatchers[i];
+        }
+        return new IsRequestWithHeaders(hasItems(headerMatchers), namedHeaders);
+    }
+
+    @Override
+    protected boolean matchesSafely(Request request, Description mismatch) {
+        if (namedHeaders == null) {
+            return super.matchesSafely(request, mismatch);
+        }
+        RequestView view = RequestView.of(request);
+        for (IsHeader.NamedHeader header : namedHeaders) {
+            if (!header.matchesAny(view.headers(header.name))) {
+                if (!(mismatch instanceof Description.NullDescription)) {
+                    super.matchesSafely(request, mismatch);
+                }
+                return false;
+            }
+        }
+        return true;
     }
 
     @Override
@@ -1,18 +1,21 @@
 package retromock.matchers;
 
+import org.hamcrest.Description;
 import org.hamcrest.FeatureMatcher;
 import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeDiagnosingMatcher;
 import retrofit.client.Request;
 
 import java.net.URI;
 import java.util.AbstractMap;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import static org.hamcrest.core.IsCollectionContaining.hasItem;
 import static org.hamcrest.core.IsEqual.equalTo;
-import static retromock.matchers.IsRegex.matchesRegex;
 
 public class IsRequestWithUrl extends FeatureMatcher<Request, URI> {
 
@@ -20,9 +23,24 @@ public class IsRequestWithUrl extends FeatureMatcher<Request, URI> {
         return withPath(equalTo(path));
     }
 
-    public static Matcher<Request> withQuery(String k, String v) {
-        Map.Entry<String, String> entry = new AbstractMap.SimpleImmutableEntry<>(k, v);
-        return withQuery(hasItem(entry));
+    /**
+     * Matches a request with the query parameter {@code name} set to exactly {@code value}, both URL-decoded.
+     * Routes can be indexed by such parameters. A {@code null} value matches the parameter without a value, e.g.
+     * {@code ?flag}, but not {@code ?flag=}.
+     */
+    public static Matcher<Request> withQuery(String name, String value) {
+        if (value == null) {
+            return withQuery(hasItem(new AbstractMap.SimpleImmutableEntry<String, String>(name, null)));
+        }
+        return new QueryParameter(name, equalTo(value), value);
+    }
+
+    /**
+     * Matches a request with a value of the query parameter {@code name} matching {@code value}, both URL-decoded.
+     * Parameters without a value have an empty value.
+     */
+    public static Matcher<Request> withQuery(String name, Matcher<String> value) {
+        return new QueryParameter(name, value, null);
     }
 
     public static Matcher<Request> withPath(Matcher<String> pathMatcher) {
@@ -30,7 +48,17 @@ public class IsRequestWithUrl extends FeatureMatcher<Request, URI> {
     }
 
     public static Matcher<Request> withPathMatching(String regex) {
-        return withPath(matchesRegex(regex));
+        return new PathMatching(Pattern.compile(regex));
+    }
+
+    /**
+     * Matches a request whose path segments match {@code template}, e.g. {@code /users/{id}/orders}, where each
+     * {@code {name}} stands for a whole, non-empty segment.
+     *
+     * @throws IllegalArgumentException if a segment contains a variable and other text
+     */
+    public static PathTemplate withPathTemplate(String template) {
+        return new PathTemplate(template);
     }
 
     public static Matcher<Request> pathWithUrlParameters(String path, Map<String, ?> urlParams) {
@@ -41,7 +69,7 @@ public class IsRequestWithUrl extends FeatureMatcher<Request, URI> {
     }
 
     public static Matcher<Request> withQuery(Matcher<? super Iterable<Map.Entry<String,String>>> pathMatcher) {
-        return withUri(new UrlWithQuery(pathMatcher));
+        return new RequestWithQuery(pathMatcher);
     }
 
     private static Matcher<Request> withUri(Matcher<URI> uriMatcher) {
@@ -54,7 +82,112 @@ public class IsRequestWithUrl extends FeatureMatcher<Request, URI> {
 
     @Override
     protected URI featureValueOf(Request request) {
-        return URI.create(request.getUrl());
+        return RequestView.of(request).uri();
+    }
+
+    /**
+     * Matches the whole path against a regular expression. A {@linkplain retromock.MockClient} compiles the
+     * patterns of its routes into a prefilter, so most of them never run for a request.
+     */
+    public static final class PathMatching extends IsRequestWithUrl {
+
+        private final Pattern pattern;
+
+        PathMatching(Pattern pattern) {
+            super(new UrlWithPath(new IsRegex(pattern)));
+            this.pattern = pattern;
+        }
+
+        public Pattern pattern() {
+            return pattern;
+        }
+    }
+
+    /**
+     * A path with variables, see {@linkplain #withPathTemplate(String)}. A {@linkplain retromock.MockClient} keeps
+     * the templates of its routes in a trie of segments and binds the variables of the route that answers a request
+     * to its {@linkplain RequestView#pathVariables() view}.
+     */
+    public static final class PathTemplate extends TypeSafeDiagnosingMatcher<Request> {
+
+        private final String template;
+        /** the literal segments, {@code null} where there is a variable */
+        private final String[] literals;
+        /** the variable names, {@code null} where there is a literal segment */
+        private final String[] names;
+
+        PathTemplate(String template) {
+            this.template = template;
+            List<String> segments = RequestView.segments(template);
+            this.literals = new String[segments.size()];
+            this.names = new String[segments.size()];
+            for (int i = 0; i < segments.size(); i++) {
+                String segment = segments.get(i);
+                if (segment.length() > 2 && segment.startsWith("{") && segment.endsWith("}")) {
+                    names[i] = segment.substring(1, segment.length() - 1);
+                } else {
+                    literals[i] = segment;
+                }
+                String text = names[i] == null ? segment : names[i];
+                if (text.indexOf('{') != -1 || text.indexOf('}') != -1) {
+                    throw new IllegalArgumentException(
+                            "segments of a path template must be literal or a whole {variable}: " + template);
+                }
+            }
+        }
+
+        public int size() {
+            return literals.length;
+        }
+
+        /**
+         * @return the literal segment at {@code index}, {@code null} if it is a variable
+         */
+        public String literal(int index) {
+            return literals[index];
+        }
+
+        /**
+         * @return the values of the variables in {@code segments}, or {@code null} if they do not match this template
+         */
+        public Map<String, String> variables(List<String> segments) {
+            if (!matches(segments)) return null;
+            Map<String, String> result = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] != null) result.put(names[i], segments.get(i));
+            }
+            return Collections.unmodifiableMap(result);
+        }
+
+        /**
+         * Binds the variables of the request of {@code view} to it, if its path matches this template.
+         */
+        public void bind(RequestView view) {
+            Map<String, String> variables = variables(view.pathSegments());
+            if (variables != null) view.pathVariables = variables;
+        }
+
+        boolean matches(List<String> segments) {
+            if (segments.size() != literals.length) return false;
+            for (int i = 0; i < literals.length; i++) {
+                String segment = segments.get(i);
+                if (literals[i] == null ? segment.isEmpty() : !literals[i].equals(segment)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        protected boolean matchesSafely(Request request, Description mismatch) {
+            List<String> segments = RequestView.of(request).pathSegments();
+            if (matches(segments)) return true;
+            mismatch.appendText("path segments were ").appendValueList("[", ", ", "]", segments);
+            return false;
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("a request with a path like ").appendText(template);
+        }
     }
 
     public static class UrlWithPath extends FeatureMatcher<URI, String> {
@@ -77,17 +210,67 @@ public class IsRequestWithUrl extends FeatureMatcher<Request, URI> {
 
         @Override
         protected Iterable<Map.Entry<String,String>> featureValueOf(URI actual) {
-            List<Map.Entry<String,String>> result = new LinkedList<>();
-            String queryString = actual.getQuery();
-            String[] queries = queryString.split("&");
-            for (String query : queries) {
-                if (query.isEmpty()) continue;
-                String[] kv = query.split("=", 2);
-                String key = kv[0];
-                String val = kv.length == 2 ? kv[1] : null;
-                result.add(new AbstractMap.SimpleImmutableEntry<>(key, val));
+            return RequestView.queryEntries(actual);
+        }
+    }
+
+    /**
+     * Matches the query parameters of a request, which are split only once per request, see {@linkplain RequestView}.
+     */
+    static class RequestWithQuery extends FeatureMatcher<Request, Iterable<Map.Entry<String,String>>> {
+
+        RequestWithQuery(Matcher<? super Iterable<Map.Entry<String,String>>> subMatcher) {
+            super(subMatcher, "a request with query parameters", "query parameters");
+        }
+
+        @Override
+        protected Iterable<Map.Entry<String,String>> featureValueOf(Request actual) {
+            return RequestView.of(actual).queryEntries();
+        }
+    }
+
+    /**
+     * Matches a query parameter with a known name, looked up in the decoded parameters of the request,
+     * see {@linkplain RequestView#query(String)}.
+     */
+    public static final class QueryParameter extends FeatureMatcher<Request, List<String>> {
+
+        private final String name;
+        private final Matcher<String> value;
+        private final String literal;
+
+        QueryParameter(String name, Matcher<String> value, String literal) {
+            super(hasItem(value), "a request with query parameter " + name, name);
+            this.name = name;
+            this.value = value;
+            this.literal = literal;
+        }
+
+        public String name() {
+            return name;
+        }
+
+        /**
+         * @return the exact value this matcher requires, or {@code null} if it matches values with a matcher
+         */
+        public String literal() {
+            return literal;
+        }
+
+        @Override
+        protected boolean matchesSafely(Request request, Description mismatch) {
+            for (String v : RequestView.of(request).query(name)) {
+                if (literal != null ? literal.equals(v) : value.matches(v)) return true;
+            }
+            if (!(mismatch instanceof Description.NullDescription)) {
+                super.matchesSafely(request, mismatch);
             }
-            return result;
+            return false;
+        }
+
+        @Override
+        protected List<String> featureValueOf(Request request) {
+            return RequestView.of(request).query(name);
         }
     }
 }
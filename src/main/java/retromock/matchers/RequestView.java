@@ -0,0 +1,354 @@
+package retromock.matchers;
+
+import com.jayway.restassured.path.json.JsonPath;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedOutput;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Parsed parts of a {@linkplain retrofit.client.Request}, each computed at most once.
+ *
+ * While a {@linkplain retromock.MockClient} executes a request, it {@linkplain #bind(Request) binds} a view of it
+ * to the executing thread, so all matchers evaluated for that request share the parsed URI, query parameters,
+ * headers, body and JSON document. Outside of that, {@linkplain #of(Request)} returns a fresh view.
+ *
+ * A view is not thread-safe; it is meant to be used by the thread executing the request.
+ */
+public class RequestView {
+
+    private static final ThreadLocal<RequestView> CURRENT = new ThreadLocal<>();
+
+    private final Request request;
+    private URI uri;
+    private List<String> pathSegments;
+    /** set by the path template of the route answering the request */
+    Map<String, String> pathVariables;
+    private List<Map.Entry<String, String>> queryEntries;
+    private Map<String, List<String>> query;
+    private Map<String, List<String>> headers;
+    private TypedByteArray body;
+    private String bodyText;
+    private JsonPath json;
+    private Map<String, Object> jsonValues;
+
+    RequestView(Request request) {
+        this.request = request;
+    }
+
+    /**
+     * Returns the view bound to the current thread if it belongs to {@code request}, otherwise a new view.
+     */
+    public static RequestView of(Request request) {
+        RequestView current = CURRENT.get();
+        if (current != null && current.request == request) {
+            return current;
+        }
+        return new RequestView(request);
+    }
+
+    /**
+     * Binds a view of {@code request} to the current thread until the returned scope is closed.
+     */
+    public static Scope bind(Request request) {
+        RequestView previous = CURRENT.get();
+        RequestView view = new RequestView(request);
+        CURRENT.set(view);
+        return new Scope(view, previous);
+    }
+
+    public Request request() {
+        return request;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the URL of the request is not a valid URI
+     */
+    public URI uri() {
+        if (uri == null) {
+            uri = URI.create(request.getUrl());
+        }
+        return uri;
+    }
+
+    public String path() {
+        return uri().getPath();
+    }
+
+    /**
+     * The decoded segments of the {@linkplain #path() path}, e.g. {@code [users, 42]} for {@code /users/42/}.
+     */
+    public List<String> pathSegments() {
+        if (pathSegments == null) {
+            pathSegments = segments(path());
+        }
+        return pathSegments;
+    }
+
+    static List<String> segments(String path) {
+        List<String> result = new ArrayList<>();
+        if (path != null) {
+            int start = path.startsWith("/") ? 1 : 0;
+            while (start < path.length()) {
+                int end = path.indexOf('/', start);
+                if (end == -1) end = path.length();
+                result.add(path.substring(start, end));
+                start = end + 1;
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * The variables of the {@linkplain IsRequestWithUrl#withPathTemplate(String) path template} of the route
+     * answering the request, e.g. {@code {id=42}} for {@code /users/{id}} and {@code /users/42}. Empty unless the
+     * view is bound by a {@linkplain retromock.MockClient} that found a route with a path template.
+     */
+    public Map<String, String> pathVariables() {
+        return pathVariables == null ? Collections.<String, String>emptyMap() : pathVariables;
+    }
+
+    /**
+     * The value of the path variable {@code name}, or {@code null}, see {@linkplain #pathVariables()}.
+     */
+    public String pathVariable(String name) {
+        return pathVariables().get(name);
+    }
+
+    /**
+     * The query parameters in the order they appear in the URL, as split from the decoded query string.
+     * Parameters without a value have a {@code null} value.
+     */
+    public List<Map.Entry<String, String>> queryEntries() {
+        if (queryEntries == null) {
+            queryEntries = queryEntries(uri());
+        }
+        return queryEntries;
+    }
+
+    static List<Map.Entry<String, String>> queryEntries(URI uri) {
+        List<Map.Entry<String, String>> result = new ArrayList<>();
+        String queryString = uri.getQuery();
+        if (queryString != null) {
+            for (String query : queryString.split("&")) {
+                if (query.isEmpty()) continue;
+                String[] kv = query.split("=", 2);
+                result.add(new AbstractMap.SimpleImmutableEntry<>(kv[0], kv.length == 2 ? kv[1] : null));
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * The query parameters by name, with names and values URL-decoded.
+     * Parameters without a value have an empty value.
+     */
+    public Map<String, List<String>> query() {
+        if (query == null) {
+            Map<String, List<String>> result = new LinkedHashMap<>();
+            String queryString = uri().getRawQuery();
+            if (queryString != null) {
+                for (String query : queryString.split("&")) {
+                    if (query.isEmpty()) continue;
+                    int eq = query.indexOf('=');
+                    String key = decode(eq == -1 ? query : query.substring(0, eq));
+                    String val = eq == -1 ? "" : decode(query.substring(eq + 1));
+                    List<String> values = result.get(key);
+                    if (values == null) {
+                        values = new ArrayList<>(1);
+                        result.put(key, values);
+                    }
+                    values.add(val);
+                }
+            }
+            query = Collections.unmodifiableMap(result);
+        }
+        return query;
+    }
+
+    /**
+     * The values of the query parameter {@code name}, URL-decoded.
+     */
+    public List<String> query(String name) {
+        List<String> values = query().get(name);
+        return values == null ? Collections.<String>emptyList() : values;
+    }
+
+    /**
+     * The header values by name. Names are compared case-insensitively.
+     */
+    public Map<String, List<String>> headers() {
+        if (headers == null) {
+            Map<String, List<String>> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            List<Header> requestHeaders = request.getHeaders();
+            if (requestHeaders != null) {
+                for (Header header : requestHeaders) {
+                    if (header.getName() == null) continue;
+                    List<String> values = result.get(header.getName());
+                    if (values == null) {
+                        values = new ArrayList<>(1);
+                        result.put(header.getName(), values);
+                    }
+                    values.add(header.getValue());
+                }
+            }
+            headers = Collections.unmodifiableMap(result);
+        }
+        return headers;
+    }
+
+    /**
+     * The values of the header {@code name}, which is compared case-insensitively.
+     */
+    public List<String> headers(String name) {
+        List<String> values = headers().get(name);
+        return values == null ? Collections.<String>emptyList() : values;
+    }
+
+    /**
+     * The body of the request, buffered so it can be read any number of times,
+     * or {@code null} if the request has no body.
+     */
+    public TypedByteArray body() {
+        if (body == null) {
+            TypedOutput output = request.getBody();
+            if (output == null) return null;
+            if (output instanceof TypedByteArray) {
+                body = (TypedByteArray) output;
+            } else {
+                final int capacity = (int) Math.max(output.length(), 32);
+                final ByteArrayOutputStream os = new ByteArrayOutputStream(capacity);
+                try {
+                    output.writeTo(os);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                body = new TypedByteArray(output.mimeType(), os.toByteArray());
+            }
+        }
+        return body;
+    }
+
+    /**
+     * The body of the request if it was {@linkplain #body() buffered} already, e.g. by a body matcher, otherwise
+     * {@code null} without buffering it.
+     */
+    public TypedByteArray bufferedBody() {
+        return body;
+    }
+
+    /**
+     * The bytes of the body of the request, or an empty array if the request has no body.
+     */
+    public byte[] bodyBytes() {
+        TypedByteArray body = body();
+        return body == null ? new byte[0] : body.getBytes();
+    }
+
+    /**
+     * The body of the request decoded as UTF-8, or {@code null} if the request has no body.
+     */
+    public String bodyText() {
+        if (bodyText == null) {
+            TypedByteArray body = body();
+            if (body == null) return null;
+            bodyText = new String(body.getBytes(), StandardCharsets.UTF_8);
+        }
+        return bodyText;
+    }
+
+    /**
+     * The body of the request as JSON document, or {@code null} if the request has no body.
+     */
+    public JsonPath json() {
+        if (json == null) {
+            String text = bodyText();
+            if (text == null) return null;
+            json = JsonPath.from(text);
+        }
+        return json;
+    }
+
+    /**
+     * The value at {@code path} in the {@linkplain #json() JSON document} of the body.
+     */
+    public Object json(String path) {
+        if (jsonValues == null) {
+            jsonValues = new HashMap<>();
+        }
+        if (jsonValues.containsKey(path)) {
+            return jsonValues.get(path);
+        }
+        Object value = json().get(path);
+        jsonValues.put(path, value);
+        return value;
+    }
+
+    /**
+     * @return the view bound to the current thread if {@code body} is its buffered body, otherwise {@code null}
+     */
+    static RequestView ofBody(TypedOutput body) {
+        RequestView current = CURRENT.get();
+        return current != null && current.body != null && current.body == body ? current : null;
+    }
+
+    /**
+     * @return the view bound to the current thread if {@code json} is its parsed body, otherwise {@code null}
+     */
+    static RequestView ofJson(JsonPath json) {
+        RequestView current = CURRENT.get();
+        return current != null && current.json != null && current.json == json ? current : null;
+    }
+
+    private static String decode(String s) {
+        try {
+            return URLDecoder.decode(s, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new AssertionError(e);
+        } catch (IllegalArgumentException e) {
+            return s;
+        }
+    }
+
+    /**
+     * Keeps a view bound to the current thread until it is closed.
+     */
+    public static class Scope implements AutoCloseable {
+
+        private final RequestView view;
+        private final RequestView previous;
+
+        private Scope(RequestView view, RequestView previous) {
+            this.view = view;
+            this.previous = previous;
+        }
+
+        public RequestView view() {
+            return view;
+        }
+
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package retromock.parser;
+
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+/**
+ * A fixture file in the format understood by {@linkplain HttpParser}, that is parsed once into a
+ * {@linkplain ResponseTemplate} and only parsed again when the modification time or the size of the file changes.
+ *
+ * Instances are safe to use from multiple threads. Concurrent callers may parse a changed file more than once,
+ * but always get a complete template. Streamed bodies of responses that are still being read when the file
+ * changes may see the new content.
+ */
+public class CachedFixture {
+
+    private final Path path;
+    private final boolean streaming;
+    private volatile Compiled compiled;
+
+    public CachedFixture(Path path) {
+        this(path, false);
+    }
+
+    /**
+     * @param path fixture file
+     * @param streaming if the body should be streamed from the file on every read instead of being kept on the heap,
+     *                  see {@linkplain HttpParser#compileStreaming(java.nio.file.Path)}
+     */
+    public CachedFixture(Path path, boolean streaming) {
+        this.path = path;
+        this.streaming = streaming;
+    }
+
+    /**
+     * Returns the template for the current content of the file, parsing the file if it changed.
+     *
+     * @return {@link ResponseTemplate} for the current content of the file
+     * @throws IOException If an I/O error occurs while reading the file
+     */
+    public ResponseTemplate template() throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Compiled current = compiled;
+        if (current == null || !current.isFresh(attributes)) {
+            ResponseTemplate template = streaming ? HttpParser.compileStreaming(path) : HttpParser.compile(path);
+            current = new Compiled(template, attributes);
+            compiled = current;
+        }
+        return current.template;
+    }
+
+    /**
+     * Renders the current content of the file into a {@linkplain retrofit.client.Response}.
+     *
+     * @param url URL this mock response is answering for
+     * @return {@link retrofit.client.Response} filled with data from the file
+     * @throws IOException If an I/O error occurs while reading the file
+     */
+    public Response render(String url) throws IOException {
+        return template().render(url);
+    }
+
+    /**
+     * Renders the current content of the file into a {@linkplain retrofit.client.Response} answering {@code request}.
+     *
+     * @param request the request this mock response is answering
+     * @return {@link retrofit.client.Response} filled with data from the file and the request
+     * @throws IOException If an I/O error occurs while reading the file
+     */
+    public Response render(Request request) throws IOException {
+        return template().render(request);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    private static class Compiled {
+        final ResponseTemplate template;
+        final FileTime lastModified;
+        final long size;
+
+        Compiled(ResponseTemplate template, BasicFileAttributes attributes) {
+            this.template = template;
+            this.lastModified = attributes.lastModifiedTime();
+            this.size = attributes.size();
+        }
+
+        boolean isFresh(BasicFileAttributes attributes) {
+            return size == attributes.size() && lastModified.equals(attributes.lastModifiedTime());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package retromock.parser;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Formats dates for the {@code Date} header, e.g. {@code Sun, 06 Nov 1994 08:49:37 GMT}.
+ *
+ * The formatting is stateless, so it is safe to share across threads. The current date is cached for the
+ * second it was formatted in, so all responses rendered within one second share the same string.
+ */
+final class HttpDate {
+
+    private static final String[] DAYS = { "Thu", "Fri", "Sat", "Sun", "Mon", "Tue", "Wed" };
+    private static final String[] MONTHS = { "Jan", "Feb", "Mar", "Apr", "May", "Jun", "Jul", "Aug", "Sep", "Oct", "Nov", "Dec" };
+    private static final AtomicReference<Cached> CURRENT = new AtomicReference<>(new Cached(Long.MIN_VALUE, null));
+
+    private HttpDate() {}
+
+    /**
+     * @return the current date, formatted at most once per second
+     */
+    static String now() {
+        long second = System.currentTimeMillis() / 1000L;
+        Cached cached = CURRENT.get();
+        if (cached.second == second) {
+            return cached.value;
+        }
+        Cached updated = new Cached(second, format(second * 1000L));
+        // only a newer second replaces the cached one; the CAS fails if another thread published one meanwhile
+        if (second > cached.second) {
+            CURRENT.compareAndSet(cached, updated);
+        }
+        return updated.value;
+    }
+
+    /**
+     * @param epochMillis milliseconds since 1970-01-01T00:00:00Z
+     * @return the date in GMT, formatted as in RFC 1123
+     */
+    static String format(long epochMillis) {
+        long epochSecond = floorDiv(epochMillis, 1000L);
+        long days = floorDiv(epochSecond, 86400L);
+        int secondOfDay = (int) floorMod(epochSecond, 86400L);
+
+        // civil date from days since epoch, see http://howardhinnant.github.io/date_algorithms.html#civil_from_days
+        long z = days + 719468;
+        long era = floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+        StringBuilder result = new StringBuilder(29)
+                .append(DAYS[(int) floorMod(days, 7L)]).append(", ");
+        twoDigits(result, day).append(' ')
+                .append(MONTHS[month - 1]).append(' ')
+                .append(year).append(' ');
+        twoDigits(result, secondOfDay / 3600).append(':');
+        twoDigits(result, secondOfDay / 60 % 60).append(':');
+        twoDigits(result, secondOfDay % 60).append(" GMT");
+        return result.toString();
+    }
+
+    private static long floorDiv(long x, long y) {
+        long q = x / y;
+        return (x % y != 0 && (x < 0) != (y < 0)) ? q - 1 : q;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    private static StringBuilder twoDigits(StringBuilder sb, int value) {
+        return sb.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+    }
+
+    private static class Cached {
+        final long second;
+        final String value;
+
+        Cached(long second, String value) {
+            this.second = second;
+            this.value = value;
+        }
+    }
+}
@@ -6,10 +6,12 @@ import retrofit.mime.TypedByteArray;
 import retrofit.mime.TypedInput;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.regex.*;
 
@@ -29,7 +31,22 @@ import java.util.regex.*;
  *
  * The placeholder {@code ${DATE}} will be replaced with the current date.
  * The placeholder {@code ${LENGTH}} will be replaced with the actual length of the body.
- * The {@code charset} parameter of {@code Content-Type} is considered while parsing the body.
+ *
+ * Header values and bodies that are kept on the heap may also refer to the request they answer with
+ * {@code ${path.N}}, {@code ${query.name}} and {@code ${header.Name}}, e.g. {@code {"id": ${path.1}}} to echo the id
+ * of {@code /users/42}, and to the variables of the path template of their route with {@code ${path.name}}, e.g.
+ * {@code ${path.id}} for {@code /users/{id}}. These are filled in when the response is
+ * {@linkplain ResponseTemplate#render(retrofit.client.Request) rendered} for a request.
+ *
+ * Bodies may be stored compressed along with their {@code Content-Encoding} header, in which case {@code ${LENGTH}}
+ * is their compressed length; see {@linkplain retromock.MockClient.ResponseFactory#compressed} to serve them to
+ * clients that do not accept the coding, or to compress plain bodies.
+ *
+ * Files, byte arrays and {@linkplain java.io.InputStream}s are parsed on the byte level: the status line and the
+ * headers are scanned by hand and the body is taken over verbatim, so binary bodies and bodies with CRLF line
+ * endings are served exactly as they are stored. Only {@linkplain java.io.Reader}s and
+ * {@linkplain #compile(java.nio.ByteBuffer, java.nio.charset.Charset)} decode the body and encode it again using the
+ * {@code charset} parameter of {@code Content-Type}.
  *
  * @since 2014-06-17
  */
@@ -39,6 +56,11 @@ public class HttpParser {
     private static final Pattern HEADER_PATTERN = Pattern.compile("(?<name>[a-zA-Z-]+): (?<value>.+)");
     private static final Pattern CHARSET_PATTERN = Pattern.compile("charset=(?<charset>.+\\b)");
     private static final String DEFAULT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+    private static final byte[] HTTP_VERSION = "HTTP/1.1 ".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BYTE_ORDER_MARK = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+    /** files larger than this are memory-mapped instead of read */
+    private static final long MAP_THRESHOLD = 64 * 1024;
+    private static final int HEAD_BUFFER_SIZE = 8 * 1024;
 
     /**
      * Parses a {@linkplain java.io.BufferedReader} into a {@linkplain retrofit.client.Response} object.
@@ -49,21 +71,120 @@ public class HttpParser {
      * @throws IOException If an I/O error occurs while parsing
      */
     public static Response parse(String url, BufferedReader input) throws IOException {
+        return compile(input).render(url);
+    }
+
+    /**
+     * Parses a {@linkplain java.io.BufferedReader} into a {@linkplain ResponseTemplate} that can be rendered
+     * into any number of {@linkplain retrofit.client.Response} objects without parsing the input again.
+     *
+     * @param input {@link java.io.BufferedReader} to read from
+     * @return {@link ResponseTemplate} filled with data from the {@linkplain java.io.BufferedReader}
+     * @throws IOException If an I/O error occurs while parsing
+     */
+    public static ResponseTemplate compile(BufferedReader input) throws IOException {
         Status status = status(input);
         List<Header> headers = headers(input);
         TypedInput body = body(contentType(headers), input);
-        headers = new PlaceholderReplacer(headers)
-                .withDate(new Date())
-                .withLength(body)
-                .build();
+        return new ResponseTemplate(status.code(), status.reason(), headers, body);
+    }
+
+    /**
+     * Parses a {@linkplain java.nio.file.Path} into a {@linkplain ResponseTemplate}.
+     * Large files are memory-mapped rather than read.
+     *
+     * @param path {@link java.nio.file.Path} to read from
+     * @return {@link ResponseTemplate} filled with data from the {@linkplain java.nio.file.Path}
+     * @throws IOException If an I/O error occurs while parsing
+     */
+    public static ResponseTemplate compile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > MAP_THRESHOLD) {
+                return compile(channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // read until the buffer is full
+            }
+            buffer.flip();
+            return compile(buffer);
+        }
+    }
+
+    /**
+     * Parses the remaining bytes of a {@linkplain java.nio.ByteBuffer} into a {@linkplain ResponseTemplate}.
+     * The body is taken over verbatim. The position of the buffer is not changed.
+     *
+     * @param input {@link java.nio.ByteBuffer} to read from
+     * @return {@link ResponseTemplate} filled with data from the {@linkplain java.nio.ByteBuffer}
+     */
+    public static ResponseTemplate compile(ByteBuffer input) {
+        return compile(input, null);
+    }
+
+    /**
+     * Parses the remaining bytes of a {@linkplain java.nio.ByteBuffer} into a {@linkplain ResponseTemplate}.
+     * If {@code sourceCharset} differs from the {@code charset} parameter of {@code Content-Type}, the body
+     * is decoded with {@code sourceCharset} and encoded with the declared charset, otherwise it is taken over verbatim.
+     * The position of the buffer is not changed.
+     *
+     * @param input {@link java.nio.ByteBuffer} to read from
+     * @param sourceCharset charset the body is stored in, {@code null} to take the body over verbatim
+     * @return {@link ResponseTemplate} filled with data from the {@linkplain java.nio.ByteBuffer}
+     */
+    public static ResponseTemplate compile(ByteBuffer input, Charset sourceCharset) {
+        Head head = head(input);
+        String mimeType = contentType(head.headers);
+        byte[] body = bytes(input, head.bodyStart, input.limit());
+        if (sourceCharset != null) {
+            Charset targetCharset = charset(mimeType);
+            if (!targetCharset.equals(sourceCharset)) {
+                body = new String(body, sourceCharset).getBytes(targetCharset);
+            }
+        }
+        return new ResponseTemplate(head.status.code(), head.status.reason(), head.headers, new TypedByteArray(mimeType, body));
+    }
 
-        return new Response(
-                url,
-                status.code(),
-                status.reason(),
-                headers,
-                body
-        );
+    /**
+     * Parses the status line and the headers of a {@linkplain java.nio.file.Path} into a {@linkplain ResponseTemplate}
+     * whose body is streamed from the file whenever it is read, see {@linkplain TypedFileRegion}.
+     * Only the header section of the file is read, so even huge bodies do not take up any heap.
+     *
+     * @param path {@link java.nio.file.Path} to read from
+     * @return {@link ResponseTemplate} with a body backed by the {@linkplain java.nio.file.Path}
+     * @throws IOException If an I/O error occurs while parsing
+     */
+    public static ResponseTemplate compileStreaming(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, HEAD_BUFFER_SIZE));
+            boolean eof = false;
+            while (true) {
+                while (buffer.hasRemaining() && !eof) {
+                    eof = channel.read(buffer) == -1;
+                }
+                buffer.flip();
+                if (eof || bodyStart(buffer) != -1 || buffer.limit() == size) break;
+                ByteBuffer larger = ByteBuffer.allocate((int) Math.min(size, buffer.capacity() * 2L));
+                larger.put(buffer);
+                buffer = larger;
+            }
+            Head head = head(buffer);
+            TypedInput body = new TypedFileRegion(contentType(head.headers), path, head.bodyStart, size - head.bodyStart);
+            return new ResponseTemplate(head.status.code(), head.status.reason(), head.headers, body);
+        }
+    }
+
+    /**
+     * Parses a byte array into a {@linkplain retrofit.client.Response} object. The body is taken over verbatim.
+     *
+     * @param url URL this mock response is answering for
+     * @param input bytes to read from
+     * @return {@link retrofit.client.Response} object filled with data from the byte array
+     */
+    public static Response parse(String url, byte[] input) {
+        return compile(ByteBuffer.wrap(input)).render(url);
     }
 
     /**
@@ -89,8 +210,14 @@ public class HttpParser {
      * @throws IOException If an I/O error occurs while parsing
      */
     public static Response parse(String url, InputStream is) throws IOException {
-        try (Reader reader = new InputStreamReader(is)) {
-            return parse(url, reader);
+        try (InputStream in = is) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return parse(url, bytes.toByteArray());
         }
     }
 
@@ -103,9 +230,7 @@ public class HttpParser {
      * @throws IOException If an I/O error occurs while parsing
      */
     public static Response parse(String url, File file) throws IOException {
-        try (Reader reader = new FileReader(file)) {
-            return parse(url, reader);
-        }
+        return parse(url, file.toPath());
     }
 
     /**
@@ -117,7 +242,7 @@ public class HttpParser {
      * @throws IOException If an I/O error occurs while parsing
      */
     public static Response parse(String url, Path path) throws IOException {
-        return parse(url, path.toFile());
+        return compile(path).render(url);
     }
 
     private interface Status {
@@ -141,6 +266,136 @@ public class HttpParser {
         }
     }
 
+    private static class Head {
+        final Status status;
+        final List<Header> headers;
+        final int bodyStart;
+
+        Head(Status status, List<Header> headers, int bodyStart) {
+            this.status = status;
+            this.headers = headers;
+            this.bodyStart = bodyStart;
+        }
+    }
+
+    private static Head head(ByteBuffer input) {
+        int limit = input.limit();
+        int pos = input.position();
+        if (startsWith(input, pos, limit, BYTE_ORDER_MARK)) {
+            pos += BYTE_ORDER_MARK.length;
+        }
+
+        int eol = lineEnd(input, pos, limit);
+        Status status = status(input, pos, withoutCr(input, pos, eol));
+        pos = Math.min(eol + 1, limit);
+
+        List<Header> headers = new ArrayList<>();
+        while (pos < limit) {
+            eol = lineEnd(input, pos, limit);
+            int end = withoutCr(input, pos, eol);
+            int start = pos;
+            pos = Math.min(eol + 1, limit);
+            if (end == start) break;
+            header(input, start, end, headers);
+        }
+        return new Head(status, headers, pos);
+    }
+
+    /**
+     * @return the index right after the empty line ending the header section, or -1 if there is none
+     */
+    private static int bodyStart(ByteBuffer input) {
+        int limit = input.limit();
+        int pos = input.position();
+        while (pos < limit) {
+            int eol = lineEnd(input, pos, limit);
+            if (eol == limit) return -1;
+            if (pos > input.position() && withoutCr(input, pos, eol) == pos) return eol + 1;
+            pos = eol + 1;
+        }
+        return -1;
+    }
+
+    private static Status status(ByteBuffer input, int start, int end) {
+        if (!startsWith(input, start, end, HTTP_VERSION)) {
+            throw invalidStatusLine();
+        }
+        int pos = start + HTTP_VERSION.length;
+        if (end - pos < 5 || input.get(pos + 3) != ' ') {
+            throw invalidStatusLine();
+        }
+        int code = 0;
+        for (int i = pos; i < pos + 3; i++) {
+            byte b = input.get(i);
+            if (b < '0' || b > '9') {
+                throw invalidStatusLine();
+            }
+            code = code * 10 + (b - '0');
+        }
+        final int statusCode = code;
+        final String statusReason = string(input, pos + 4, end);
+        return new Status() {
+            public int code() { return statusCode; }
+            public String reason() { return statusReason; }
+        };
+    }
+
+    private static void header(ByteBuffer input, int start, int end, List<Header> headers) {
+        int colon = start;
+        while (colon < end && input.get(colon) != ':') colon++;
+        int nameEnd = trimEnd(input, start, colon);
+        if (colon == end || nameEnd == start) {
+            return;
+        }
+        int valueStart = colon + 1;
+        while (valueStart < end && isWhitespace(input.get(valueStart))) valueStart++;
+        int valueEnd = trimEnd(input, valueStart, end);
+        headers.add(new Header(string(input, start, nameEnd), string(input, valueStart, valueEnd)));
+    }
+
+    private static int lineEnd(ByteBuffer input, int start, int limit) {
+        int pos = start;
+        while (pos < limit && input.get(pos) != '\n') pos++;
+        return pos;
+    }
+
+    private static int withoutCr(ByteBuffer input, int start, int end) {
+        return end > start && input.get(end - 1) == '\r' ? end - 1 : end;
+    }
+
+    private static int trimEnd(ByteBuffer input, int start, int end) {
+        while (end > start && isWhitespace(input.get(end - 1))) end--;
+        return end;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean startsWith(ByteBuffer input, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) {
+            if (input.get(start + i) != prefix[i]) return false;
+        }
+        return true;
+    }
+
+    private static byte[] bytes(ByteBuffer input, int start, int end) {
+        byte[] result = new byte[end - start];
+        ByteBuffer slice = input.duplicate();
+        slice.limit(end);
+        slice.position(start);
+        slice.get(result);
+        return result;
+    }
+
+    private static String string(ByteBuffer input, int start, int end) {
+        if (input.hasArray()) {
+            return new String(input.array(), input.arrayOffset() + start, end - start, StandardCharsets.UTF_8);
+        }
+        return new String(bytes(input, start, end), StandardCharsets.UTF_8);
+    }
+
     private static RuntimeException invalidStatusLine() {
         throw new IllegalArgumentException("Input does not begin with a status line");
     }
@@ -181,27 +436,31 @@ public class HttpParser {
         return new TypedByteArray(mimeType, body.toString().getBytes(charset(mimeType)));
     }
 
-    private static Charset charset(String mimeType) {
-        Matcher m = CHARSET_PATTERN.matcher(mimeType);
-        if (m.find()) {
+    static Charset charset(String mimeType) {
+        return charset(mimeType, Charset.defaultCharset());
+    }
+
+    /**
+     * @return the charset named by {@code mimeType}, or {@code fallback} if it names none
+     */
+    static Charset charset(String mimeType, Charset fallback) {
+        Matcher m = mimeType == null ? null : CHARSET_PATTERN.matcher(mimeType);
+        if (m != null && m.find()) {
             return Charset.forName(m.group("charset"));
         } else {
-            return Charset.defaultCharset();
+            return fallback;
         }
     }
 
-    private static class PlaceholderReplacer {
+    static class PlaceholderReplacer {
 
-        static final TimeZone GMT = TimeZone.getTimeZone("GMT");
-        final DateFormat dateFormat;
+        static final String LENGTH = "${LENGTH}";
+        static final String DATE = "${DATE}";
         final List<Header> headers;
         String length;
-        String date;
 
         PlaceholderReplacer(List<Header> headers) {
             this.headers = headers;
-            this.dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
-            this.dateFormat.setTimeZone(GMT);
         }
 
         public PlaceholderReplacer withLength(long length) {
@@ -209,36 +468,34 @@ public class HttpParser {
             return this;
         }
 
-        public PlaceholderReplacer withLength(TypedByteArray byteArray) {
-            return withLength(byteArray.length());
-        }
-
         public PlaceholderReplacer withLength(TypedInput input) {
-            return withLength((TypedByteArray)input);
-        }
-
-        public PlaceholderReplacer withDate(Date date) {
-            this.date = dateFormat.format(date);
-            return this;
+            return withLength(input.length());
         }
 
+        /**
+         * Replaces the placeholders that have a value, other placeholders are kept as they are.
+         */
         public List<Header> build() {
             List<Header> result = new ArrayList<>(headers.size());
             for (Header header : headers) {
-                switch (header.getValue()) {
-                    case "${LENGTH}" :
-                        result.add(new Header(header.getName(), length));
-                        break;
-                    case "${DATE}" :
-                        result.add(new Header(header.getName(), date));
-                        break;
-                    default:
-                        result.add(header);
+                if (length != null && LENGTH.equals(header.getValue())) {
+                    result.add(new Header(header.getName(), length));
+                } else {
+                    result.add(header);
                 }
             }
             return result;
         }
 
+        static int[] positions(List<Header> headers, String placeholder) {
+            int count = 0;
+            int[] positions = new int[headers.size()];
+            for (int i = 0; i < positions.length; i++) {
+                if (placeholder.equals(headers.get(i).getValue())) positions[count++] = i;
+            }
+            return Arrays.copyOf(positions, count);
+        }
+
     }
 
 }
@@ -0,0 +1,167 @@
+package retromock.parser;
+
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retromock.matchers.RequestView;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable, parsed mock response, as created by {@linkplain HttpParser#compile(java.io.BufferedReader)}.
+ *
+ * The status line, the headers and the encoded body are kept as they were parsed, and the {@code ${LENGTH}}
+ * placeholder is resolved once. Rendering a {@linkplain retrofit.client.Response} only fills in the per-request
+ * placeholders, i.e. {@code ${DATE}}, whose positions are also determined once.
+ *
+ * Header values and bodies on the heap that refer to the request, like {@code ${query.id}}, are compiled into
+ * literal chunks and slots once, see {@linkplain HttpParser}. Rendering such a template for a request copies the
+ * chunks and the values into a byte array of the final size, and {@code ${LENGTH}} is the length of that array.
+ */
+public class ResponseTemplate {
+
+    private static final int[] NONE = new int[0];
+
+    private final int status;
+    private final String reason;
+    private final List<Header> headers;
+    private final TypedInput body;
+    /** positions of the headers with a {@code ${DATE}} placeholder */
+    private final int[] dateHeaders;
+    /** the body with request placeholders, {@code null} if it has none */
+    private final Segments bodySegments;
+    private final Charset bodyCharset;
+    /** positions of the headers with a {@code ${LENGTH}} placeholder, if {@link #bodySegments} decides the length */
+    private final int[] lengthHeaders;
+    /** header values with request placeholders by position, {@code null} if there are none */
+    private final Segments[] headerSegments;
+
+    ResponseTemplate(int status, String reason, List<Header> headers, TypedInput body) {
+        this.status = status;
+        this.reason = reason;
+        this.bodySegments = body instanceof TypedByteArray ? Segments.compile(((TypedByteArray) body).getBytes()) : null;
+        // request values are encoded as UTF-8 unless the fixture names a charset, like the JSON default
+        this.bodyCharset = bodySegments == null ? null : HttpParser.charset(body.mimeType(), StandardCharsets.UTF_8);
+        HttpParser.PlaceholderReplacer replacer = new HttpParser.PlaceholderReplacer(headers);
+        if (bodySegments == null) {
+            replacer.withLength(body);
+        }
+        this.headers = Collections.unmodifiableList(replacer.build());
+        this.body = body;
+        this.dateHeaders = HttpParser.PlaceholderReplacer.positions(this.headers, HttpParser.PlaceholderReplacer.DATE);
+        this.lengthHeaders = bodySegments == null
+                ? NONE
+                : HttpParser.PlaceholderReplacer.positions(this.headers, HttpParser.PlaceholderReplacer.LENGTH);
+        this.headerSegments = headerSegments(this.headers);
+    }
+
+    /**
+     * Creates a template from parts that were parsed before, e.g. stored in a fixture archive. The headers may
+     * contain the same placeholders as a parsed fixture.
+     */
+    public static ResponseTemplate of(int status, String reason, List<Header> headers, TypedInput body) {
+        return new ResponseTemplate(status, reason, headers, body);
+    }
+
+    private static Segments[] headerSegments(List<Header> headers) {
+        Segments[] result = null;
+        for (int i = 0; i < headers.size(); i++) {
+            String value = headers.get(i).getValue();
+            Segments segments = value == null ? null : Segments.compile(value.getBytes(StandardCharsets.UTF_8));
+            if (segments != null) {
+                if (result == null) result = new Segments[headers.size()];
+                result[i] = segments;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Renders this template into a {@linkplain retrofit.client.Response} without a request,
+     * so placeholders referring to the request are empty.
+     *
+     * @param url URL this mock response is answering for
+     * @return {@link retrofit.client.Response} with all placeholders filled in
+     */
+    public Response render(String url) {
+        return render(url, null);
+    }
+
+    /**
+     * Renders this template into a {@linkplain retrofit.client.Response} answering {@code request}.
+     *
+     * @param request the request this mock response is answering
+     * @return {@link retrofit.client.Response} with all placeholders filled in
+     */
+    public Response render(Request request) {
+        return render(request.getUrl(), isStatic() ? null : RequestView.of(request));
+    }
+
+    private Response render(String url, RequestView view) {
+        TypedInput body = this.body;
+        String length = null;
+        if (bodySegments != null) {
+            byte[] bytes = bodySegments.render(view, bodyCharset);
+            body = new TypedByteArray(body.mimeType(), bytes);
+            length = String.valueOf(bytes.length);
+        }
+
+        List<Header> headers = this.headers;
+        if (dateHeaders.length > 0 || lengthHeaders.length > 0 || headerSegments != null) {
+            Header[] rendered = headers.toArray(new Header[headers.size()]);
+            if (dateHeaders.length > 0) {
+                String date = HttpDate.now();
+                for (int i : dateHeaders) {
+                    rendered[i] = new Header(rendered[i].getName(), date);
+                }
+            }
+            for (int i : lengthHeaders) {
+                rendered[i] = new Header(rendered[i].getName(), length);
+            }
+            if (headerSegments != null) {
+                for (int i = 0; i < rendered.length; i++) {
+                    if (headerSegments[i] == null) continue;
+                    byte[] value = headerSegments[i].render(view, StandardCharsets.UTF_8);
+                    rendered[i] = new Header(rendered[i].getName(), new String(value, StandardCharsets.UTF_8));
+                }
+            }
+            headers = Arrays.asList(rendered);
+        }
+        return new Response(url, status, reason, headers, body);
+    }
+
+    /**
+     * @return {@code true} if the rendered responses do not depend on the request
+     */
+    public boolean isStatic() {
+        return bodySegments == null && headerSegments == null;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public String reason() {
+        return reason;
+    }
+
+    /**
+     * The headers with {@code ${LENGTH}} resolved, unless the length depends on the request.
+     */
+    public List<Header> headers() {
+        return headers;
+    }
+
+    /**
+     * The body as parsed, with request placeholders not filled in.
+     */
+    public TypedInput body() {
+        return body;
+    }
+}
@@ -0,0 +1,196 @@
+package retromock.parser;
+
+import retromock.matchers.RequestView;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A byte sequence with request placeholders, compiled into literal chunks and slots.
+ *
+ * The placeholders are
+ * <ul>
+ *     <li>{@code ${path.N}}: the {@code N}th segment of the request path, counted from 0,
+ *     i.e. {@code ${path.1}} is {@code 42} for {@code /users/42}</li>
+ *     <li>{@code ${path.name}}: the variable {@code name} of the path template of the route, i.e. {@code ${path.id}}
+ *     is {@code 42} for {@code /users/42} and the template {@code /users/{id}}</li>
+ *     <li>{@code ${query.name}}: the first value of the query parameter {@code name}, URL-decoded</li>
+ *     <li>{@code ${header.Name}}: the first value of the request header {@code Name}</li>
+ * </ul>
+ * Missing values render as an empty string. Everything else, including {@code ${LENGTH}} and {@code ${DATE}},
+ * is kept literally. The literal chunks are not copied but point into the compiled bytes.
+ */
+final class Segments {
+
+    private static final int MAX_NAME_LENGTH = 256;
+    private static final byte[] EMPTY = new byte[0];
+
+    private final byte[] source;
+    /** start of each literal chunk in {@link #source}, one more than there are slots */
+    private final int[] literalStart;
+    /** end (exclusive) of each literal chunk in {@link #source} */
+    private final int[] literalEnd;
+    /** the slot following each literal chunk except the last one */
+    private final Slot[] slots;
+    private final int literalLength;
+
+    private Segments(byte[] source, int[] literalStart, int[] literalEnd, Slot[] slots) {
+        this.source = source;
+        this.literalStart = literalStart;
+        this.literalEnd = literalEnd;
+        this.slots = slots;
+        int length = 0;
+        for (int i = 0; i < literalStart.length; i++) {
+            length += literalEnd[i] - literalStart[i];
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * @return the compiled bytes, or {@code null} if they contain no request placeholder
+     */
+    static Segments compile(byte[] source) {
+        List<Integer> starts = null;
+        List<Integer> ends = null;
+        List<Slot> slots = null;
+        int literal = 0;
+        int i = 0;
+        while (i < source.length - 1) {
+            if (source[i] != '$' || source[i + 1] != '{') {
+                i++;
+                continue;
+            }
+            int close = close(source, i + 2);
+            Slot slot = close == -1 ? null : Slot.parse(new String(source, i + 2, close - i - 2, StandardCharsets.UTF_8));
+            if (slot == null) {
+                i += 2;
+                continue;
+            }
+            if (slots == null) {
+                starts = new ArrayList<>();
+                ends = new ArrayList<>();
+                slots = new ArrayList<>();
+            }
+            starts.add(literal);
+            ends.add(i);
+            slots.add(slot);
+            literal = i = close + 1;
+        }
+        if (slots == null) return null;
+        starts.add(literal);
+        ends.add(source.length);
+        return new Segments(source, toArray(starts), toArray(ends), slots.toArray(new Slot[slots.size()]));
+    }
+
+    /**
+     * Renders the bytes with the placeholders filled in from {@code view}.
+     *
+     * @param view the request to take the values from, {@code null} to render all placeholders empty
+     * @param charset the charset to encode the values in
+     */
+    byte[] render(RequestView view, Charset charset) {
+        byte[][] values = new byte[slots.length][];
+        int length = literalLength;
+        for (int i = 0; i < slots.length; i++) {
+            String value = view == null ? null : slots[i].resolve(view);
+            values[i] = value == null || value.isEmpty() ? EMPTY : value.getBytes(charset);
+            length += values[i].length;
+        }
+
+        byte[] result = new byte[length];
+        int position = 0;
+        for (int i = 0; i < slots.length; i++) {
+            int chunk = literalEnd[i] - literalStart[i];
+            System.arraycopy(source, literalStart[i], result, position, chunk);
+            position += chunk;
+            System.arraycopy(values[i], 0, result, position, values[i].length);
+            position += values[i].length;
+        }
+        int last = slots.length;
+        System.arraycopy(source, literalStart[last], result, position, literalEnd[last] - literalStart[last]);
+        return result;
+    }
+
+    private static int close(byte[] source, int from) {
+        int limit = Math.min(source.length, from + MAX_NAME_LENGTH);
+        for (int i = from; i < limit; i++) {
+            byte b = source[i];
+            if (b == '}') return i;
+            if (b == '$' || b == '{' || b <= ' ') return -1;
+        }
+        return -1;
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] result = new int[list.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = list.get(i);
+        }
+        return result;
+    }
+
+    private static final class Slot {
+        private static final int PATH = 0;
+        private static final int QUERY = 1;
+        private static final int HEADER = 2;
+        private static final int PATH_VARIABLE = 3;
+
+        final int kind;
+        final String name;
+        final int index;
+
+        private Slot(int kind, String name, int index) {
+            this.kind = kind;
+            this.name = name;
+            this.index = index;
+        }
+
+        /**
+         * @return the slot for a placeholder name like {@code query.id}, or {@code null} if it is no request placeholder
+         */
+        static Slot parse(String placeholder) {
+            if (placeholder.startsWith("path.") && placeholder.length() > "path.".length()) {
+                String name = placeholder.substring("path.".length());
+                int index = index(name);
+                return index == -1 ? new Slot(PATH_VARIABLE, name, -1) : new Slot(PATH, null, index);
+            }
+            if (placeholder.startsWith("query.") && placeholder.length() > "query.".length()) {
+                return new Slot(QUERY, placeholder.substring("query.".length()), -1);
+            }
+            if (placeholder.startsWith("header.") && placeholder.length() > "header.".length()) {
+                return new Slot(HEADER, placeholder.substring("header.".length()), -1);
+            }
+            return null;
+        }
+
+        String resolve(RequestView view) {
+            List<String> values;
+            switch (kind) {
+                case PATH:
+                    values = view.pathSegments();
+                    return index < values.size() ? values.get(index) : null;
+                case PATH_VARIABLE:
+                    return view.pathVariable(name);
+                case QUERY:
+                    values = view.query(name);
+                    break;
+                default:
+                    values = view.headers(name);
+            }
+            return values.isEmpty() ? null : values.get(0);
+        }
+
+        private static int index(String digits) {
+            if (digits.isEmpty() || digits.length() > 4) return -1;
+            int result = 0;
+            for (int i = 0; i < digits.length(); i++) {
+                char c = digits.charAt(i);
+                if (c < '0' || c > '9') return -1;
+                result = result * 10 + (c - '0');
+            }
+            return result;
+        }
+    }
+}
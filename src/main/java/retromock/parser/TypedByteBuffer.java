@@ -0,0 +1,84 @@
+package retromock.parser;
+
+import retrofit.mime.TypedInput;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A {@linkplain retrofit.mime.TypedInput} backed by a {@linkplain java.nio.ByteBuffer}, e.g. a slice of a
+ * memory-mapped file.
+ *
+ * The bytes are never copied: every call to {@linkplain #in()} reads from its own view of the buffer, so the same
+ * instance can be served to any number of concurrent responses.
+ */
+public class TypedByteBuffer implements TypedInput {
+
+    private final String mimeType;
+    private final ByteBuffer buffer;
+
+    /**
+     * @param buffer the bytes between its position and its limit are the content; it must not be changed afterwards
+     */
+    public TypedByteBuffer(String mimeType, ByteBuffer buffer) {
+        this.mimeType = mimeType;
+        this.buffer = buffer.slice();
+    }
+
+    @Override
+    public String mimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public long length() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public InputStream in() {
+        return new BufferInputStream(buffer());
+    }
+
+    /**
+     * @return a read-only view of the content, with its own position and limit
+     */
+    public ByteBuffer buffer() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private static class BufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        BufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package retromock.parser;
+
+import retrofit.mime.TypedInput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A {@linkplain retrofit.mime.TypedInput} backed by a region of a file.
+ *
+ * Nothing is buffered on the heap: every call to {@linkplain #in()} opens the file and streams the region from it,
+ * so the same instance can be served to any number of concurrent responses.
+ */
+public class TypedFileRegion implements TypedInput {
+
+    private final String mimeType;
+    private final Path path;
+    private final long offset;
+    private final long length;
+
+    public TypedFileRegion(String mimeType, Path path, long offset, long length) {
+        this.mimeType = mimeType;
+        this.path = path;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public String mimeType() {
+        return mimeType;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public InputStream in() throws IOException {
+        return new RegionInputStream(FileChannel.open(path, StandardOpenOption.READ), offset, offset + length);
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public long offset() {
+        return offset;
+    }
+
+    private static class RegionInputStream extends InputStream {
+
+        private final FileChannel channel;
+        private final long end;
+        private long position;
+
+        RegionInputStream(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.position = start;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            long remaining = end - position;
+            if (remaining <= 0) return -1;
+            int read = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+            if (read == -1) return -1;
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            long skipped = Math.max(0, Math.min(n, end - position));
+            position += skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package retromock.server;
+
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retromock.parser.TypedByteBuffer;
+import retromock.parser.TypedFileRegion;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One HTTP/1.1 connection of a {@linkplain MockServer}, serving requests until either side closes it.
+ *
+ * Requests are read into a single buffer that is reused for the whole connection, so pipelined requests are simply
+ * the bytes left over after the previous request. Request bodies may be sent with {@code Content-Length} or
+ * {@code chunked}; responses always have a {@code Content-Length}.
+ */
+class HttpConnection {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+    private static final byte[] CONTINUE = "HTTP/1.1 100 Continue\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final SocketChannel channel;
+    private final Client client;
+    private final String defaultHost;
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    /** unread bytes are {@code buffer[start, end)} */
+    private int start;
+    private int end;
+
+    HttpConnection(SocketChannel channel, Client client, InetSocketAddress address) {
+        this.channel = channel;
+        this.client = client;
+        this.defaultHost = address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    void serve() throws IOException {
+        while (serveRequest()) {
+            // keep the connection open
+        }
+    }
+
+    /**
+     * @return if the connection should be kept open for another request
+     */
+    private boolean serveRequest() throws IOException {
+        String requestLine = readLine();
+        while (requestLine != null && requestLine.isEmpty()) {
+            requestLine = readLine(); // tolerate empty lines between requests
+        }
+        if (requestLine == null) return false;
+
+        String[] parts = requestLine.split(" ");
+        if (parts.length != 3 || !parts[2].startsWith("HTTP/1.")) {
+            writeError(400, "Bad Request", "Malformed request line: " + requestLine);
+            return false;
+        }
+        String method = parts[0];
+        String target = parts[1];
+        boolean http10 = parts[2].equals("HTTP/1.0");
+
+        List<Header> headers = new ArrayList<>();
+        String host = null;
+        String contentType = null;
+        long contentLength = -1;
+        boolean chunked = false;
+        String connection = null;
+        boolean expectContinue = false;
+        String line;
+        while ((line = readLine()) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon <= 0) {
+                writeError(400, "Bad Request", "Malformed header: " + line);
+                return false;
+            }
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            headers.add(new Header(name, value));
+            if (name.equalsIgnoreCase("Host")) {
+                host = value;
+            } else if (name.equalsIgnoreCase("Content-Type")) {
+                contentType = value;
+            } else if (name.equalsIgnoreCase("Content-Length")) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    writeError(400, "Bad Request", "Malformed Content-Length: " + value);
+                    return false;
+                }
+            } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+                chunked = value.toLowerCase().contains("chunked");
+            } else if (name.equalsIgnoreCase("Connection")) {
+                connection = value.toLowerCase();
+            } else if (name.equalsIgnoreCase("Expect")) {
+                expectContinue = value.equalsIgnoreCase("100-continue");
+            }
+        }
+        if (line == null) {
+            throw new EOFException("connection closed within request head");
+        }
+
+        if (expectContinue && !http10) {
+            writeFully(ByteBuffer.wrap(CONTINUE));
+        }
+        byte[] body;
+        try {
+            body = chunked ? readChunked() : contentLength > 0 ? readBody(contentLength) : null;
+        } catch (MalformedBodyException e) {
+            writeError(400, "Bad Request", e.getMessage());
+            return false;
+        }
+        boolean keepAlive = http10
+                ? connection != null && connection.contains("keep-alive")
+                : connection == null || !connection.contains("close");
+
+        String url = target.startsWith("/") ? "http://" + (host == null ? defaultHost : host) + target : target;
+        Request request = new Request(method, url, headers,
+                body == null ? null : new TypedByteArray(contentType, body));
+        Response response;
+        try {
+            response = client.execute(request);
+        } catch (IOException | RuntimeException e) {
+            writeError(500, "Internal Server Error", String.valueOf(e));
+            return false;
+        }
+        write(response, method.equals("HEAD"), keepAlive);
+        return keepAlive;
+    }
+
+    private void write(Response response, boolean headRequest, boolean keepAlive) throws IOException {
+        TypedInput body = response.getBody();
+        byte[] bytes = null;
+        long length = 0;
+        if (body != null) {
+            length = body.length();
+            if (body instanceof TypedByteArray) {
+                bytes = ((TypedByteArray) body).getBytes();
+                length = bytes.length;
+            } else if (length < 0) {
+                bytes = readFully(body);
+                length = bytes.length;
+            }
+        }
+
+        StringBuilder head = new StringBuilder(256);
+        head.append("HTTP/1.1 ").append(response.getStatus()).append(' ')
+                .append(response.getReason() == null ? "" : withoutLineBreaks(response.getReason())).append("\r\n");
+        boolean hasContentType = false;
+        for (Header header : response.getHeaders()) {
+            String name = header.getName();
+            if (name == null
+                    || name.equalsIgnoreCase("Content-Length")
+                    || name.equalsIgnoreCase("Transfer-Encoding")
+                    || name.equalsIgnoreCase("Connection")) {
+                continue;
+            }
+            hasContentType |= name.equalsIgnoreCase("Content-Type");
+            head.append(withoutLineBreaks(name)).append(": ").append(withoutLineBreaks(header.getValue()))
+                    .append("\r\n");
+        }
+        if (!hasContentType && body != null && body.mimeType() != null) {
+            head.append("Content-Type: ").append(withoutLineBreaks(body.mimeType())).append("\r\n");
+        }
+        head.append("Content-Length: ").append(length).append("\r\n");
+        if (!keepAlive) {
+            head.append("Connection: close\r\n");
+        }
+        head.append("\r\n");
+        ByteBuffer headBuffer = ByteBuffer.wrap(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+
+        if (headRequest || body == null || length == 0) {
+            writeFully(headBuffer);
+        } else if (bytes != null) {
+            writeFully(headBuffer, ByteBuffer.wrap(bytes));
+        } else if (body instanceof TypedByteBuffer) {
+            writeFully(headBuffer, ((TypedByteBuffer) body).buffer());
+        } else if (body instanceof TypedFileRegion) {
+            writeFully(headBuffer);
+            transfer((TypedFileRegion) body);
+        } else {
+            writeFully(headBuffer);
+            copy(body, length);
+        }
+    }
+
+    /**
+     * Replaces CR and LF with spaces, so values filled in from the request, like {@code ${query.name}}, cannot
+     * split the response.
+     */
+    static String withoutLineBreaks(String value) {
+        if (value == null || (value.indexOf('\r') == -1 && value.indexOf('\n') == -1)) return value;
+        return value.replace('\r', ' ').replace('\n', ' ');
+    }
+
+    private void transfer(TypedFileRegion region) throws IOException {
+        try (FileChannel file = FileChannel.open(region.path(), StandardOpenOption.READ)) {
+            long position = region.offset();
+            long remaining = region.length();
+            while (remaining > 0) {
+                long transferred = file.transferTo(position, remaining, channel);
+                if (transferred <= 0) {
+                    if (position >= file.size()) {
+                        throw new EOFException("file region ends after " + (position - region.offset()) + " bytes");
+                    }
+                    continue;
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    private void copy(TypedInput body, long length) throws IOException {
+        byte[] copyBuffer = new byte[(int) Math.min(length, COPY_BUFFER_SIZE)];
+        long remaining = length;
+        try (InputStream in = body.in()) {
+            while (remaining > 0) {
+                int read = in.read(copyBuffer, 0, (int) Math.min(copyBuffer.length, remaining));
+                if (read == -1) {
+                    // the announced length cannot be kept, so the connection cannot be reused
+                    throw new EOFException("body ends " + remaining + " bytes before its length");
+                }
+                writeFully(ByteBuffer.wrap(copyBuffer, 0, read));
+                remaining -= read;
+            }
+        }
+    }
+
+    private void writeError(int status, String reason, String message) throws IOException {
+        write(new Response("", status, reason, new ArrayList<Header>(),
+                new TypedByteArray("text/plain; charset=UTF-8", message.getBytes(StandardCharsets.UTF_8))), false, false);
+    }
+
+    private void writeFully(ByteBuffer... buffers) throws IOException {
+        ByteBuffer last = buffers[buffers.length - 1];
+        while (last.hasRemaining()) {
+            channel.write(buffers);
+        }
+    }
+
+    /**
+     * @return the next line without its line terminator, or {@code null} if the connection was closed before it
+     */
+    private String readLine() throws IOException {
+        int scanned = start;
+        while (true) {
+            for (int i = scanned; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    int lineEnd = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                    String line = new String(buffer, start, lineEnd - start, StandardCharsets.ISO_8859_1);
+                    start = i + 1;
+                    return line;
+                }
+            }
+            scanned = end - start;
+            if (end - start >= MAX_LINE_LENGTH) {
+                throw new IOException("request line or header longer than " + MAX_LINE_LENGTH + " bytes");
+            }
+            if (fill() == -1) {
+                return null;
+            }
+            scanned += start;
+        }
+    }
+
+    private byte[] readBody(long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new MalformedBodyException("Request body too large: " + length + " bytes");
+        }
+        byte[] body = new byte[(int) length];
+        int buffered = Math.min(end - start, body.length);
+        System.arraycopy(buffer, start, body, 0, buffered);
+        start += buffered;
+        ByteBuffer rest = ByteBuffer.wrap(body, buffered, body.length - buffered);
+        while (rest.hasRemaining()) {
+            if (channel.read(rest) == -1) {
+                throw new EOFException("connection closed within request body");
+            }
+        }
+        return body;
+    }
+
+    private byte[] readChunked() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        while (true) {
+            String sizeLine = readLine();
+            if (sizeLine == null) {
+                throw new EOFException("connection closed within chunked request body");
+            }
+            int semicolon = sizeLine.indexOf(';');
+            long size;
+            try {
+                size = Long.parseLong((semicolon == -1 ? sizeLine : sizeLine.substring(0, semicolon)).trim(), 16);
+            } catch (NumberFormatException e) {
+                throw new MalformedBodyException("Malformed chunk size: " + sizeLine);
+            }
+            if (size < 0) {
+                throw new MalformedBodyException("Malformed chunk size: " + sizeLine);
+            }
+            if (size == 0) {
+                String trailer;
+                while ((trailer = readLine()) != null && !trailer.isEmpty()) {
+                    // trailers are not passed on
+                }
+                return body.toByteArray();
+            }
+            body.write(readBody(size));
+            readLine();
+        }
+    }
+
+    /**
+     * Reads more bytes into {@link #buffer}, compacting or growing it if it is full.
+     *
+     * @return the number of bytes read, or {@code -1} at the end of the stream
+     */
+    private int fill() throws IOException {
+        if (start == end) {
+            start = end = 0;
+        } else if (end == buffer.length) {
+            byte[] target = start > 0 ? buffer : new byte[buffer.length * 2];
+            System.arraycopy(buffer, start, target, 0, end - start);
+            end -= start;
+            start = 0;
+            buffer = target;
+        }
+        int read = channel.read(ByteBuffer.wrap(buffer, end, buffer.length - end));
+        if (read > 0) end += read;
+        return read;
+    }
+
+    private static byte[] readFully(TypedInput body) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream in = body.in()) {
+            byte[] copyBuffer = new byte[4096];
+            int read;
+            while ((read = in.read(copyBuffer)) != -1) {
+                os.write(copyBuffer, 0, read);
+            }
+        }
+        return os.toByteArray();
+    }
+
+    /**
+     * A request body that cannot be read, to be answered with a 400 before the connection is closed.
+     */
+    private static final class MalformedBodyException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        MalformedBodyException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package retromock.server;
+
+import retrofit.client.Client;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves the responses of a {@linkplain retrofit.client.Client}, usually a {@linkplain retromock.MockClient},
+ * over HTTP/1.1 on a local socket, so clients other than Retrofit can use the same routes and fixtures.
+ * <pre>
+ * MockClient.Provider routes = MockClient.when().GET("/hello").thenReturn(helloWorld);
+ * try (MockServer server = MockServer.start(routes.get())) {
+ *     new URL(server.url() + "/hello").openStream();
+ * }
+ * </pre>
+ *
+ * Every connection is served by its own thread reading and writing the socket channel directly, and is kept open
+ * between requests unless the client asks to close it. Because the routes may wait, e.g. for a simulated latency,
+ * a connection never holds up another one. Bodies read from files, see
+ * {@linkplain retromock.MockClient.ResponseFactory#streamFromFile(java.nio.file.Path)}, are sent with
+ * {@linkplain java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}, without
+ * copying them through the heap, and bodies from a {@linkplain retromock.FixtureArchive fixture archive} are written
+ * straight from the mapped file.
+ */
+public class MockServer implements Closeable {
+
+    private static final AtomicInteger SERVERS = new AtomicInteger();
+
+    private final Client client;
+    private final ServerSocketChannel serverChannel;
+    private final InetSocketAddress address;
+    private final Set<SocketChannel> connections =
+            Collections.newSetFromMap(new ConcurrentHashMap<SocketChannel, Boolean>());
+    private final ExecutorService workers;
+    private final Thread acceptor;
+    private volatile boolean closed;
+
+    private MockServer(Client client, ServerSocketChannel serverChannel) throws IOException {
+        this.client = client;
+        this.serverChannel = serverChannel;
+        this.address = (InetSocketAddress) serverChannel.getLocalAddress();
+        final String name = "retromock-server-" + SERVERS.incrementAndGet();
+        this.workers = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger connections = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-connection-" + connections.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept();
+            }
+        }, name + "-acceptor");
+        this.acceptor.setDaemon(true);
+    }
+
+    /**
+     * Starts serving {@code client} on an ephemeral port of the loopback interface.
+     */
+    public static MockServer start(Client client) throws IOException {
+        return start(client, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    }
+
+    /**
+     * Starts serving {@code client} on {@code address}.
+     */
+    public static MockServer start(Client client, InetSocketAddress address) throws IOException {
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(address, 1024);
+            MockServer server = new MockServer(client, serverChannel);
+            server.acceptor.start();
+            return server;
+        } catch (IOException | RuntimeException e) {
+            serverChannel.close();
+            throw e;
+        }
+    }
+
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    public int port() {
+        return address.getPort();
+    }
+
+    /**
+     * @return the base URL of this server, e.g. {@code http://127.0.0.1:51234}, without a trailing slash
+     */
+    public String url() {
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    /**
+     * Stops accepting connections and closes all open connections.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            serverChannel.close();
+        } finally {
+            for (SocketChannel connection : connections) {
+                connection.close();
+            }
+            workers.shutdownNow();
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            final SocketChannel channel;
+            try {
+                channel = serverChannel.accept();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (closed) return;
+                continue;
+            }
+            connections.add(channel);
+            if (closed) {
+                close(channel);
+                return;
+            }
+            try {
+                workers.execute(serving(channel));
+            } catch (RejectedExecutionException e) {
+                close(channel);
+                return;
+            }
+        }
+    }
+
+    private Runnable serving(final SocketChannel channel) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    new HttpConnection(channel, client, address).serve();
+                } catch (IOException e) {
+                    // the client went away, nothing to answer
+                } catch (RuntimeException e) {
+                    // a request we failed on must not take the worker thread down; the client sees the socket close
+                } finally {
+                    close(channel);
+                }
+            }
+        };
+    }
+
+    private void close(SocketChannel channel) {
+        connections.remove(channel);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package retromock;
+
+import org.junit.Test;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retromock.parser.HttpParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CompressionTest {
+
+    private static final String BODY = "{\"items\": [\"a\", \"a\", \"a\", \"a\", \"a\", \"a\", \"a\", \"a\"]}";
+
+    @Test
+    public void testNegotiate() throws Exception {
+        assertEquals("identity", Compression.negotiate(Collections.<String>emptyList()));
+        assertEquals("gzip", Compression.negotiate(Collections.singletonList("gzip, deflate, br")));
+        assertEquals("deflate", Compression.negotiate(Collections.singletonList("gzip;q=0.5, deflate")));
+        assertEquals("deflate", Compression.negotiate(Arrays.asList("br", "deflate")));
+        assertEquals("gzip", Compression.negotiate(Collections.singletonList("*")));
+        assertEquals("identity", Compression.negotiate(Collections.singletonList("*;q=0, identity")));
+        assertEquals("deflate", Compression.negotiate(Collections.singletonList("*, gzip;q=0")));
+    }
+
+    @Test
+    public void testCompressesOncePerCoding() throws Exception {
+        MockClient client = MockClient.when()
+                .GET("/items").compressed().thenReturn(fixture("Content-Type: application/json\n"
+                        + "Content-Length: ${LENGTH}\n\n" + BODY))
+                .get();
+
+        Response gzip = client.execute(request("gzip"));
+        byte[] gzipped = ((TypedByteArray) gzip.getBody()).getBytes();
+        assertEquals("gzip", header(gzip, "Content-Encoding"));
+        assertEquals(String.valueOf(gzipped.length), header(gzip, "Content-Length"));
+        assertEquals("Accept-Encoding", header(gzip, "Vary"));
+        assertEquals(BODY, text(new GZIPInputStream(gzip.getBody().in())));
+        assertSame(gzipped, ((TypedByteArray) client.execute(request("gzip")).getBody()).getBytes());
+
+        Response deflate = client.execute(request("deflate"));
+        assertEquals("deflate", header(deflate, "Content-Encoding"));
+        assertEquals(BODY, text(new InflaterInputStream(deflate.getBody().in())));
+
+        Response plain = client.execute(request(null));
+        assertNull(header(plain, "Content-Encoding"));
+        assertEquals(BODY, text(plain.getBody().in()));
+    }
+
+    @Test
+    public void testDecodesStoredBodiesForOtherClients() throws Exception {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(BODY.getBytes(StandardCharsets.UTF_8));
+        }
+        ByteArrayOutputStream fixture = new ByteArrayOutputStream();
+        fixture.write("HTTP/1.1 200 OK\nContent-Encoding: gzip\nContent-Length: ${LENGTH}\n\n"
+                .getBytes(StandardCharsets.UTF_8));
+        fixture.write(compressed.toByteArray());
+        MockClient client = MockClient.when()
+                .GET("/items").compressed().thenReturn(MockClient.ResponseFactory.fromTemplate(
+                        HttpParser.compile(ByteBuffer.wrap(fixture.toByteArray()))))
+                .get();
+
+        Response gzip = client.execute(request("gzip"));
+        assertEquals(String.valueOf(compressed.size()), header(gzip, "Content-Length"));
+        assertEquals(BODY, text(new GZIPInputStream(gzip.getBody().in())));
+
+        Response plain = client.execute(request("deflate;q=0"));
+        assertNull(header(plain, "Content-Encoding"));
+        assertEquals(String.valueOf(BODY.length()), header(plain, "Content-Length"));
+        assertEquals(BODY, text(plain.getBody().in()));
+    }
+
+    private static MockClient.ResponseFactory fixture(String headers) throws IOException {
+        return MockClient.ResponseFactory.fromTemplate(HttpParser.compile(ByteBuffer.wrap(
+                ("HTTP/1.1 200 OK\n" + headers).getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static Request request(String acceptEncoding) {
+        return new Request("GET", "http://localhost/items", acceptEncoding == null
+                ? Collections.<Header>emptyList()
+                : Collections.singletonList(new Header("Accept-Encoding", acceptEncoding)), null);
+    }
+
+    private static String header(Response response, String name) {
+        for (Header header : response.getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) return header.getValue();
+        }
+        return null;
+    }
+
+    private static String text(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream input = in) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,115 @@
+package retromock;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retromock.parser.TypedByteBuffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FixtureArchiveTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testPackAndServe() throws Exception {
+        Path fixtures = folder.newFolder("fixtures").toPath();
+        fixture(fixtures.resolve("users/42/GET.http"),
+                "HTTP/1.1 200 OK\nContent-Type: application/json\nContent-Length: ${LENGTH}\nDate: ${DATE}\n\n{\"id\": 42}");
+        fixture(fixtures.resolve("users/POST.http"), "HTTP/1.1 201 Created\nLocation: /users/43\n\n");
+        fixture(fixtures.resolve("echo/GET.http"), "HTTP/1.1 200 OK\nContent-Length: ${LENGTH}\n\nq=${query.q}");
+        Path archive = folder.getRoot().toPath().resolve("fixtures.rmfa");
+
+        FixtureArchive.pack(fixtures, archive);
+        assertEquals(3, FixtureArchive.open(archive).entries().size());
+
+        MockClient client = MockClient.when().importArchive(archive).get();
+
+        Response user = client.execute(request("GET", "http://localhost/users/42"));
+        assertEquals(200, user.getStatus());
+        assertTrue(user.getBody() instanceof TypedByteBuffer);
+        assertEquals("application/json", user.getBody().mimeType());
+        assertEquals("{\"id\": 42}", bodyOf(user));
+        assertEquals("10", header(user, "Content-Length"));
+        assertFalse(header(user, "Date").contains("${DATE}"));
+
+        Response created = client.execute(request("POST", "http://localhost/users"));
+        assertEquals(201, created.getStatus());
+        assertEquals("Created", created.getReason());
+        assertEquals("/users/43", header(created, "Location"));
+        assertEquals(0, created.getBody().length());
+
+        Response echo = client.execute(request("GET", "http://localhost/echo?q=hello"));
+        assertEquals("q=hello", bodyOf(echo));
+        assertEquals("7", header(echo, "Content-Length"));
+
+        assertEquals(404, client.execute(request("GET", "http://localhost/users")).getStatus());
+    }
+
+    @Test
+    public void testPackHeadersLongerThan64KiB() throws Exception {
+        StringBuilder policy = new StringBuilder("default-src 'self'");
+        while (policy.length() <= 70 * 1024) {
+            policy.append(" https://cdn").append(policy.length()).append(".example.org");
+        }
+        Path fixtures = folder.newFolder("fixtures").toPath();
+        fixture(fixtures.resolve("page/GET.http"),
+                "HTTP/1.1 200 OK\nContent-Security-Policy: " + policy + "\nX-Name: \u00e4\n\n<html/>");
+        Path archive = folder.getRoot().toPath().resolve("fixtures.rmfa");
+
+        FixtureArchive.pack(fixtures, archive);
+
+        Response page = MockClient.when().importArchive(archive).get()
+                .execute(request("GET", "http://localhost/page"));
+        assertEquals(policy.toString(), header(page, "Content-Security-Policy"));
+        assertEquals("\u00e4", header(page, "X-Name"));
+        assertEquals("<html/>", bodyOf(page));
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenRejectsOtherFiles() throws Exception {
+        Path file = folder.newFile("not-an-archive").toPath();
+        Files.write(file, "HTTP/1.1 200 OK\n\n".getBytes(StandardCharsets.UTF_8));
+        FixtureArchive.open(file);
+    }
+
+    private static void fixture(Path file, String content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Request request(String method, String url) {
+        return new Request(method, url, Collections.<Header>emptyList(), null);
+    }
+
+    private static String header(Response response, String name) {
+        for (Header header : response.getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) return header.getValue();
+        }
+        return null;
+    }
+
+    private static String bodyOf(Response response) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream in = response.getBody().in()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,96 @@
+package retromock;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit.client.Header;
+import retrofit.client.Request;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class FixtureImporterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testImportFromLayout() throws Exception {
+        Path root = folder.getRoot().toPath();
+        fixture(root.resolve("GET.http"), 200);
+        fixture(root.resolve("users/42/GET.http"), 201);
+        fixture(root.resolve("users/42/DELETE.http"), 202);
+        fixture(root.resolve("users/POST.http"), 203);
+        Files.write(root.resolve("users/README.md"), "ignored".getBytes(StandardCharsets.UTF_8));
+
+        MockClient client = MockClient.when().importFixtures(root).get();
+
+        assertEquals(200, status(client, "GET", "/"));
+        assertEquals(201, status(client, "GET", "/users/42"));
+        assertEquals(202, status(client, "DELETE", "/users/42"));
+        assertEquals(203, status(client, "POST", "/users"));
+        assertEquals(404, status(client, "GET", "/users"));
+    }
+
+    @Test
+    public void testImportFromManifest() throws Exception {
+        Path root = folder.getRoot().toPath();
+        fixture(root.resolve("user.http"), 201);
+        fixture(root.resolve("GET.http"), 202);
+        Files.write(root.resolve(FixtureImporter.MANIFEST),
+                "# method path file\nGET /users/42 user.http\n\nPUT /users/42 user.http\n".getBytes(StandardCharsets.UTF_8));
+
+        MockClient client = MockClient.when().importFixtures(root).get();
+
+        assertEquals(201, status(client, "GET", "/users/42"));
+        assertEquals(201, status(client, "PUT", "/users/42"));
+        assertEquals(404, status(client, "GET", "/"));
+    }
+
+    @Test
+    public void testImportManyFixtures() throws Exception {
+        Path root = folder.getRoot().toPath();
+        for (int i = 0; i < 200; i++) {
+            fixture(root.resolve("items/" + i + "/GET.http"), 200 + i % 10);
+        }
+
+        MockClient client = MockClient.when().importFixtures(root).get();
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(200 + i % 10, status(client, "GET", "/items/" + i));
+        }
+    }
+
+    @Test
+    public void testImportFailsWithoutRegisteringRoutes() throws Exception {
+        Path root = folder.getRoot().toPath();
+        fixture(root.resolve("ok/GET.http"), 200);
+        Files.createDirectories(root.resolve("broken"));
+        Files.write(root.resolve("broken/GET.http"), "not a status line".getBytes(StandardCharsets.UTF_8));
+        Files.write(root.resolve("broken/get.http"), "".getBytes(StandardCharsets.UTF_8));
+
+        MockClient.Provider provider = MockClient.when();
+        try {
+            provider.importFixtures(root);
+            fail("expected IOException");
+        } catch (IOException e) {
+            assertTrue(e.getSuppressed().length >= 1);
+        }
+        assertEquals(404, status(provider.get(), "GET", "/ok"));
+    }
+
+    private static void fixture(Path file, int status) throws IOException {
+        Files.createDirectories(file.getParent());
+        String content = "HTTP/1.1 " + status + " Status\nContent-Length: ${LENGTH}\n\n" + file.getFileName();
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int status(MockClient client, String method, String path) throws IOException {
+        return client.execute(new Request(method, "http://localhost" + path, Collections.<Header>emptyList(), null)).getStatus();
+    }
+}
@@ -0,0 +1,134 @@
+package retromock;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FixtureRecorderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final AtomicInteger liveCalls = new AtomicInteger();
+
+    private final Client live = new Client() {
+        @Override
+        public Response execute(Request request) {
+            liveCalls.incrementAndGet();
+            final byte[] body = ("live " + request.getUrl()).getBytes(StandardCharsets.UTF_8);
+            return new Response(request.getUrl(), 200, "OK",
+                    Arrays.asList(new Header("X-Live", "yes"), new Header("Content-Length", "999")),
+                    new TypedInput() {
+                        @Override public String mimeType() { return "text/plain; charset=UTF-8"; }
+                        @Override public long length() { return body.length; }
+                        @Override public InputStream in() { return new ByteArrayInputStream(body); }
+                    });
+        }
+    };
+
+    @Test
+    public void testRecordsUnmatchedRequests() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("recorded");
+        try (FixtureRecorder recorder = new FixtureRecorder(live, directory)) {
+            MockClient client = MockClient.when()
+                    .GET("/mocked").thenReturn(new Response("/", 204, "No Content",
+                            Collections.<Header>emptyList(), new TypedByteArray("text/plain", new byte[0])))
+                    .and().proxyMissesTo(recorder)
+                    .get();
+
+            assertEquals(204, client.execute(request("http://localhost/mocked")).getStatus());
+            assertEquals("live http://localhost/users/42?x=1",
+                    bodyOf(client.execute(request("http://localhost/users/42?x=1"))));
+            assertEquals("live http://localhost/users/42?x=2",
+                    bodyOf(client.execute(request("http://localhost/users/42?x=2"))));
+            client.execute(request("http://localhost/users/43")).getBody().in().close();
+            assertEquals(3, liveCalls.get());
+        }
+
+        List<String> manifest = Files.readAllLines(directory.resolve(FixtureImporter.MANIFEST), StandardCharsets.UTF_8);
+        assertEquals(Arrays.asList("GET /users/42 GET_users_42.http", "GET /users/43 GET_users_43.http"), manifest);
+        String fixture = new String(Files.readAllBytes(directory.resolve("GET_users_42.http")), StandardCharsets.UTF_8);
+        assertTrue(fixture, fixture.startsWith("HTTP/1.1 200 OK\nX-Live: yes\nContent-Length: ${LENGTH}\n"));
+
+        MockClient replay = MockClient.when().importFixtures(directory).get();
+        Response response = replay.execute(request("http://localhost/users/43"));
+        assertEquals("live http://localhost/users/43", bodyOf(response));
+        assertEquals("yes", response.getHeaders().get(0).getValue());
+        assertEquals("30", response.getHeaders().get(1).getValue());
+    }
+
+    @Test
+    public void testRecordsLaterResponseIfBodyWasNeverRead() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("recorded");
+        try (FixtureRecorder recorder = new FixtureRecorder(live, directory)) {
+            recorder.execute(request("http://localhost/users/42?attempt=1"));
+            assertEquals("live http://localhost/users/42?attempt=2",
+                    bodyOf(recorder.execute(request("http://localhost/users/42?attempt=2"))));
+            bodyOf(recorder.execute(request("http://localhost/users/42?attempt=3")));
+        }
+
+        List<String> manifest = Files.readAllLines(directory.resolve(FixtureImporter.MANIFEST), StandardCharsets.UTF_8);
+        assertEquals(Collections.singletonList("GET /users/42 GET_users_42.http"), manifest);
+        String fixture = new String(Files.readAllBytes(directory.resolve("GET_users_42.http")), StandardCharsets.UTF_8);
+        assertTrue(fixture, fixture.endsWith("\n\nlive http://localhost/users/42?attempt=2"));
+    }
+
+    @Test
+    public void testReportsBodiesReadAfterClose() throws Exception {
+        Path directory = folder.getRoot().toPath().resolve("recorded");
+        FixtureRecorder recorder = new FixtureRecorder(live, directory);
+        Response response = recorder.execute(request("http://localhost/users/42"));
+        recorder.close();
+        assertEquals("live http://localhost/users/42", bodyOf(response));
+
+        try {
+            recorder.flush();
+            fail();
+        } catch (IOException e) {
+            assertEquals(1, e.getSuppressed().length);
+            assertThat(e.getSuppressed()[0].getMessage(), containsString("GET /users/42"));
+        }
+        assertFalse(Files.exists(directory.resolve(FixtureImporter.MANIFEST)));
+    }
+
+    private static Request request(String url) {
+        return new Request("GET", url, Collections.<Header>emptyList(), null);
+    }
+
+    private static String bodyOf(Response response) throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (InputStream in = response.getBody().in()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+        }
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,73 @@
+package retromock;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsCoverAllValues() throws Exception {
+        for (long value = 0; value < 100000; value++) {
+            int index = LatencyHistogram.index(value);
+            assertTrue(value + " <= " + LatencyHistogram.upperBound(index), value <= LatencyHistogram.upperBound(index));
+            if (index > 0) {
+                assertTrue(value + " > " + LatencyHistogram.upperBound(index - 1),
+                        value > LatencyHistogram.upperBound(index - 1));
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(LatencyHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getP50Nanos());
+        for (long nanos = 1; nanos <= 1000; nanos++) {
+            histogram.record(nanos * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000, histogram.getMaxNanos());
+        assertEquals(500500, histogram.getMeanNanos());
+        assertEquals(500000, histogram.getP50Nanos(), 500000 * 0.125);
+        assertEquals(990000, histogram.getP99Nanos(), 990000 * 0.125);
+        assertEquals(1000000, histogram.percentileNanos(100));
+    }
+
+    @Test
+    public void testConcurrentRecordingOfTheSameBucket() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        int threads = 8;
+        final int values = 10000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < values; i++) {
+                        histogram.record(100);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        assertEquals(threads * values, histogram.getCount());
+        assertEquals(100, histogram.getMeanNanos());
+        assertEquals(LatencyHistogram.upperBound(LatencyHistogram.index(100)), histogram.getP99Nanos(), 100 * 0.125);
+    }
+}
@@ -0,0 +1,50 @@
+package retromock;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyTest {
+
+    @Test
+    public void testFixed() throws Exception {
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), Latency.fixed(5, TimeUnit.MILLISECONDS).sampleNanos());
+    }
+
+    @Test
+    public void testUniform() throws Exception {
+        Latency latency = Latency.uniform(10, 20, TimeUnit.NANOSECONDS);
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long sample = latency.sampleNanos(random);
+            assertTrue(String.valueOf(sample), sample >= 10 && sample < 20);
+        }
+    }
+
+    @Test
+    public void testPercentiles() throws Exception {
+        Latency latency = Latency.percentiles(TimeUnit.NANOSECONDS,
+                new double[] {50, 90, 100}, new long[] {100, 1000, 5000});
+        Random random = new Random(42);
+        int samples = 100000;
+        int atMedian = 0;
+        int belowP90 = 0;
+        for (int i = 0; i < samples; i++) {
+            long sample = latency.sampleNanos(random);
+            assertTrue(String.valueOf(sample), sample >= 100 && sample <= 5000);
+            if (sample == 100) atMedian++;
+            if (sample <= 1000) belowP90++;
+        }
+        assertEquals(0.5, atMedian / (double) samples, 0.01);
+        assertEquals(0.9, belowP90 / (double) samples, 0.01);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPercentilesMustBeAscending() throws Exception {
+        Latency.percentiles(TimeUnit.MILLISECONDS, new double[] {90, 50}, new long[] {10, 20});
+    }
+}
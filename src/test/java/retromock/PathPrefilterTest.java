@@ -0,0 +1,49 @@
+package retromock;
+
+import org.junit.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PathPrefilterTest {
+
+    @Test
+    public void testLiteralRuns() throws Exception {
+        assertPrefilter("/users/", "", "/orders/", "/users/\\d+/orders/[a-z]+");
+        assertPrefilter("/users/", "", "", "^/users/.*");
+        assertPrefilter("/a", "/b.json", "", "/a(x|y)?/b\\.json$");
+        assertPrefilter("/item", "", "", "/items?");
+        assertPrefilter("/items", "", "", "/items+");
+        assertPrefilter("/a", "", "", "/ab{0,1}c*d{2}");
+        assertPrefilter("", "/details", "", "[a-z]+/details");
+        assertPrefilter("/", "", "/v/", "/[\\]x]+/v/\\w*");
+    }
+
+    @Test
+    public void testUnfilteredPatterns() throws Exception {
+        assertSame(PathPrefilter.NONE, PathPrefilter.of(Pattern.compile("/users|/orders")));
+        assertSame(PathPrefilter.NONE, PathPrefilter.of(Pattern.compile("(?i)/users")));
+        assertSame(PathPrefilter.NONE, PathPrefilter.of(Pattern.compile("/users", Pattern.CASE_INSENSITIVE)));
+        assertSame(PathPrefilter.NONE, PathPrefilter.of(Pattern.compile("/\\x41")));
+        assertSame(PathPrefilter.NONE, PathPrefilter.of(Pattern.compile(".*")));
+    }
+
+    @Test
+    public void testAccepts() throws Exception {
+        PathPrefilter prefilter = PathPrefilter.of(Pattern.compile("/users/\\d+/orders"));
+        assertTrue(prefilter.accepts("/users/42/orders"));
+        assertFalse(prefilter.accepts("/users/42/invoices"));
+        assertFalse(prefilter.accepts("/groups/42/orders"));
+    }
+
+    private static void assertPrefilter(String prefix, String suffix, String required, String regex) {
+        PathPrefilter prefilter = PathPrefilter.of(Pattern.compile(regex));
+        assertEquals(regex, prefix, prefilter.prefix);
+        assertEquals(regex, suffix, prefilter.suffix);
+        assertEquals(regex, required, prefilter.required);
+    }
+}
@@ -0,0 +1,191 @@
+package retromock;
+
+import org.junit.Test;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedOutput;
+import retrofit.mime.TypedString;
+import retromock.matchers.IsRequestWithBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static retromock.matchers.IsRequestWithBody.body;
+import static retromock.matchers.IsRequestWithBody.jsonPath;
+import static retromock.matchers.IsRequestWithBody.textBody;
+import static retromock.matchers.IsRequestWithMethod.withMethod;
+import static retromock.matchers.IsRequestWithUrl.withPath;
+
+public class RequestJournalTest {
+
+    private final Response ok = new Response("/", 200, "OK", Collections.<Header>emptyList(), new TypedString(""));
+
+    @Test
+    public void testRecordsExecutedRequests() throws Exception {
+        MockClient client = MockClient.when().POST("/orders").named("orders").thenReturn(ok).get();
+        client.execute(request("POST", "http://localhost/orders", "{\"id\": 1}"));
+        client.execute(request("GET", "http://localhost/missing", null));
+
+        List<JournalEntry> entries = client.journal().entries();
+        assertEquals(2, entries.size());
+        assertEquals("POST", entries.get(0).method());
+        assertEquals("orders", entries.get(0).route());
+        assertTrue(entries.get(0).matched());
+        assertEquals("{\"id\": 1}", new String(entries.get(0).body(), "UTF-8"));
+        assertFalse(entries.get(1).matched());
+        assertNull(entries.get(1).body());
+
+        client.journal().verify(1, withPath("/orders"));
+        client.journal().verify(greaterThan(1), withPath(containsString("/")));
+        assertEquals(1, client.journal().count(new IsRequestWithBody(textBody(containsString("id")))));
+    }
+
+    @Test
+    public void testVerifyFailureListsRequests() throws Exception {
+        MockClient client = MockClient.when().GET("/foo").thenReturn(ok).get();
+        client.execute(request("GET", "http://localhost/foo", null));
+        try {
+            client.journal().verify(2, withMethod("GET"));
+            fail();
+        } catch (AssertionError e) {
+            assertThat(e.getMessage(), containsString("<1> matched"));
+            assertThat(e.getMessage(), containsString("#0 GET http://localhost/foo"));
+        }
+    }
+
+    @Test
+    public void testKeepsLatestRequestsAndTruncatesBodies() throws Exception {
+        MockClient client = MockClient.when().journal(3, 4).POST("/").thenReturn(ok).get();
+        for (int i = 0; i < 5; i++) {
+            client.execute(request("POST", "http://localhost/", "body " + i));
+        }
+
+        List<JournalEntry> entries = client.journal().entries();
+        assertEquals(3, entries.size());
+        assertEquals(2, entries.get(0).sequence());
+        assertEquals(4, entries.get(2).sequence());
+        assertEquals("body", new String(entries.get(2).body(), "UTF-8"));
+        assertEquals(6, entries.get(2).bodyLength());
+        assertTrue(entries.get(2).isTruncated());
+        assertEquals(2, client.journal().dropped());
+
+        client.journal().clear();
+        assertEquals(0, client.journal().entries().size());
+        client.execute(request("POST", "http://localhost/", null));
+        assertEquals(1, client.journal().entries().size());
+    }
+
+    @Test
+    public void testRecordsUnnamedRoutes() throws Exception {
+        MockClient client = MockClient.when().GET("/foo").thenReturn(ok).get();
+        client.execute(request("GET", "http://localhost/foo", null));
+
+        JournalEntry entry = client.journal().entries().get(0);
+        assertNull(entry.route());
+        assertThat(entry.routeDescription(), containsString("/foo"));
+        assertThat(entry.toString(), containsString("-> "));
+    }
+
+    @Test
+    public void testStopsWritingBodiesAtTheLimit() throws Exception {
+        MockClient client = MockClient.when().journal(1, 16).POST("/").thenReturn(ok).get();
+        final AtomicInteger written = new AtomicInteger();
+        TypedOutput upload = new TypedOutput() {
+            @Override
+            public String fileName() {
+                return null;
+            }
+
+            @Override
+            public String mimeType() {
+                return "application/octet-stream";
+            }
+
+            @Override
+            public long length() {
+                return -1;
+            }
+
+            @Override
+            public void writeTo(OutputStream out) throws IOException {
+                byte[] chunk = new byte[8];
+                for (int i = 0; i < 1024 * 1024; i++) {
+                    out.write(chunk);
+                    written.addAndGet(chunk.length);
+                }
+            }
+        };
+        client.execute(new Request("POST", "http://localhost/", Collections.<Header>emptyList(), upload));
+
+        JournalEntry entry = client.journal().entries().get(0);
+        assertEquals(16, entry.body().length);
+        assertEquals(-1, entry.bodyLength());
+        assertTrue(entry.isTruncated());
+        assertEquals(16, written.get());
+    }
+
+    @Test
+    public void testTruncatedJsonBodiesDoNotMatch() throws Exception {
+        MockClient client = MockClient.when().journal(2, 8).POST("/").thenReturn(ok).get();
+        client.execute(request("POST", "http://localhost/", "{\"id\": 1, \"name\": \"x\"}"));
+        client.execute(request("POST", "http://localhost/", "{\"id\":1}"));
+
+        assertTrue(client.journal().entries().get(0).isTruncated());
+        assertFalse(client.journal().entries().get(1).isTruncated());
+        client.journal().verify(1, body(jsonPath("id", equalTo(1))));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        final MockClient client = MockClient.when().GET("/").thenReturn(ok).get();
+        int threads = 8;
+        final int requests = 100;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        for (int i = 0; i < requests; i++) {
+                            client.execute(request("GET", "http://localhost/", null));
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+
+        List<JournalEntry> entries = client.journal().entries();
+        assertEquals(threads * requests, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(i, entries.get(i).sequence());
+        }
+    }
+
+    private static Request request(String method, String url, String body) {
+        return new Request(method, url, Collections.<Header>emptyList(), body == null ? null : new TypedString(body));
+    }
+}
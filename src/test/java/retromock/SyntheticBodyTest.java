@@ -0,0 +1,81 @@
+package retromock;
+
+import com.jayway.restassured.path.json.JsonPath;
+import org.junit.Test;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class SyntheticBodyTest {
+
+    @Test
+    public void testRepeating() throws Exception {
+        SyntheticBody body = SyntheticBody.repeating("text/plain", "abc".getBytes(StandardCharsets.UTF_8), 10);
+        assertEquals("abcabcabca", new String(readFully(body.in(), 4), StandardCharsets.UTF_8));
+        assertEquals(10, body.length());
+    }
+
+    @Test
+    public void testRandomIsReproducible() throws Exception {
+        SyntheticBody body = SyntheticBody.random(42, 1000);
+        byte[] bytes = readFully(body.in(), 7);
+        assertEquals(1000, bytes.length);
+        assertArrayEquals(bytes, readFully(body.in(), 4096));
+        assertFalse(Arrays.equals(bytes, readFully(SyntheticBody.random(43, 1000).in(), 4096)));
+
+        InputStream in = body.in();
+        assertEquals(501, in.skip(501));
+        byte[] rest = readFully(in, 13);
+        assertArrayEquals(Arrays.copyOfRange(bytes, 501, 1000), rest);
+    }
+
+    @Test
+    public void testJsonArray() throws Exception {
+        SyntheticBody body = SyntheticBody.jsonArray("{\"id\": 1}", 64);
+        String json = new String(readFully(body.in(), 5), StandardCharsets.UTF_8);
+        assertEquals(64, json.length());
+        assertEquals(6, JsonPath.from(json).getList("id").size());
+        assertEquals("[  ]", new String(readFully(SyntheticBody.jsonArray("{\"id\": 1}", 4).in(), 5),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testHugeBodyIsNotMaterialized() throws Exception {
+        long length = 3L << 30;
+        MockClient client = MockClient.when()
+                .GET("/huge").thenReturn(MockClient.ResponseFactory.synthetic(
+                        SyntheticBody.repeating("text/plain", "0123456789".getBytes(StandardCharsets.UTF_8), length)))
+                .get();
+
+        Response response = client.execute(new Request("GET", "http://localhost/huge",
+                Collections.<Header>emptyList(), null));
+        assertEquals(length, response.getBody().length());
+        assertSame(response.getBody(), client.execute(new Request("GET", "http://localhost/huge",
+                Collections.<Header>emptyList(), null)).getBody());
+        InputStream in = response.getBody().in();
+        assertEquals(length - 4, in.skip(length - 4));
+        assertEquals("8901", new String(readFully(in, 100), StandardCharsets.UTF_8));
+    }
+
+    private static byte[] readFully(InputStream in, int bufferSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[bufferSize];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,71 @@
+package retromock.matchers;
+
+import org.junit.Test;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.mime.TypedOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+import static retromock.matchers.IsRequestWithBody.*;
+
+public class IsRequestWithBodyTest {
+
+    static final String JSON = "{\"title\":\"test\",\"properties\":{\"foo\":\"bar\"}}";
+
+    @Test
+    public void testJsonBody() throws Exception {
+        final Request request = request(new CountingBody(JSON));
+        assertThat(request, body(jsonPath("title", is("test")), jsonPath("properties.foo", is("bar"))));
+        assertThat(request, not(body(jsonPath("title", is("other")))));
+    }
+
+    @Test
+    public void testBodyIsParsedOncePerBoundRequest() throws Exception {
+        final CountingBody body = new CountingBody(JSON);
+        final Request request = request(body);
+        try (RequestView.Scope scope = RequestView.bind(request)) {
+            assertFalse(body(jsonPath("title", is("a"))).matches(request));
+            assertFalse(body(jsonPath("title", is("b"))).matches(request));
+            assertTrue(body(jsonPath("title", is("test"))).matches(request));
+            assertTrue(new IsRequestWithBody(textBody(containsString("\"foo\""))).matches(request));
+            assertSame(scope.view().json(), scope.view().json());
+        }
+        assertEquals(1, body.writes.get());
+    }
+
+    @Test
+    public void testRawAndTextBody() throws Exception {
+        final Request request = request(new CountingBody("hello"));
+        assertThat(request, new IsRequestWithBody(rawBody(equalTo("hello".getBytes(StandardCharsets.UTF_8)))));
+        assertThat(request, new IsRequestWithBody(textBody(startsWith("hel"))));
+        assertThat(request, new IsRequestWithBody(contentType(is("application/json"))));
+    }
+
+    private Request request(TypedOutput body) {
+        return new Request("POST", "http://localhost/", Collections.<Header>emptyList(), body);
+    }
+
+    static class CountingBody implements TypedOutput {
+        final AtomicInteger writes = new AtomicInteger();
+        final byte[] bytes;
+
+        CountingBody(String body) {
+            this.bytes = body.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override public String fileName() { return null; }
+        @Override public String mimeType() { return "application/json"; }
+        @Override public long length() { return bytes.length; }
+        @Override public void writeTo(OutputStream out) throws IOException {
+            writes.incrementAndGet();
+            out.write(bytes);
+        }
+    }
+}
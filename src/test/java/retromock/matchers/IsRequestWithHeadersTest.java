@@ -9,6 +9,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertThat;
 import static retromock.matchers.IsHeader.header;
@@ -30,6 +31,14 @@ public class IsRequestWithHeadersTest {
 
     }
 
+    @Test
+    public void testWithHeadersNotMatching() throws Exception {
+        final Request request = request(Arrays.asList(new Header("X-Header", "foo")));
+        assertThat(request, not(withHeaders(header("x-header", is("bar")))));
+        assertThat(request, not(withHeaders(header("x-other", is("foo")))));
+        assertThat(request, not(withHeaders(header("x-header", is("foo")), header("x-other", is("foo")))));
+    }
+
     private Request request(final List<Header> headers) {
         return new Request("GET", "http://localhost/", headers, new TypedString(""));
     }
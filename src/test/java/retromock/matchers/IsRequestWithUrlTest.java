@@ -10,6 +10,7 @@ import java.util.HashMap;
 
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.startsWith;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
 import static retromock.matchers.IsRequestWithUrl.*;
 
@@ -29,6 +30,34 @@ public class IsRequestWithUrlTest {
         assertThat(request, withQuery("bar", "baz"));
         assertThat(request, not(withQuery("bar", "something")));
         assertThat(request, not(withQuery("whatever", "baz")));
+        assertThat(request("http://localhost/foo"), not(withQuery("bar", "baz")));
+    }
+
+    @Test
+    public void testWithQueryDecodesParameters() throws Exception {
+        final Request request = request("http://localhost/foo?q=a%20%26%20b&flag&tag=x&tag=y");
+        assertThat(request, withQuery("q", "a & b"));
+        assertThat(request, withQuery("q", startsWith("a ")));
+        assertThat(request, withQuery("flag", ""));
+        assertThat(request, withQuery("flag", (String) null));
+        assertThat(request("http://localhost/foo?flag="), not(withQuery("flag", (String) null)));
+        assertThat(request, withQuery("tag", "y"));
+        assertThat(request, not(withQuery("tag", "z")));
+    }
+
+    @Test
+    public void testWithPathTemplate() throws Exception {
+        IsRequestWithUrl.PathTemplate template = withPathTemplate("/users/{id}/orders");
+        assertThat(request("http://localhost/users/42/orders"), template);
+        assertThat(request("http://localhost/users/42"), not(template));
+        assertThat(request("http://localhost/users//orders"), not(template));
+        assertEquals(Collections.singletonMap("id", "42"),
+                template.variables(RequestView.of(request("http://localhost/users/42/orders")).pathSegments()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPathTemplateWithPartialVariable() throws Exception {
+        withPathTemplate("/users/id-{id}");
     }
 
     @Test
@@ -0,0 +1,84 @@
+package retromock.matchers;
+
+import org.junit.Test;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.mime.TypedOutput;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class RequestViewTest {
+
+    @Test
+    public void testBoundViewIsShared() throws Exception {
+        Request request = request("http://localhost/foo");
+        try (RequestView.Scope scope = RequestView.bind(request)) {
+            assertSame(scope.view(), RequestView.of(request));
+            assertSame(RequestView.of(request).uri(), RequestView.of(request).uri());
+            assertNotSame(scope.view(), RequestView.of(request("http://localhost/foo")));
+        }
+        assertNotSame(RequestView.of(request), RequestView.of(request));
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        RequestView view = RequestView.of(request("http://localhost/foo?a=1&b=x%20y&a=2&c&d%3D=%26"));
+        assertEquals(Arrays.asList("1", "2"), view.query("a"));
+        assertEquals(Collections.singletonList("x y"), view.query("b"));
+        assertEquals(Collections.singletonList(""), view.query("c"));
+        assertEquals(Collections.singletonList("&"), view.query("d="));
+        assertTrue(view.query("e").isEmpty());
+        assertTrue(RequestView.of(request("http://localhost/foo")).query().isEmpty());
+        assertTrue(RequestView.of(request("http://localhost/foo")).queryEntries().isEmpty());
+    }
+
+    @Test
+    public void testPathSegments() throws Exception {
+        assertEquals(Arrays.asList("users", "a b"), RequestView.of(request("http://localhost/users/a%20b/")).pathSegments());
+        assertEquals(Collections.emptyList(), RequestView.of(request("http://localhost/")).pathSegments());
+    }
+
+    @Test
+    public void testHeaders() throws Exception {
+        Request request = new Request("GET", "http://localhost/", Arrays.asList(
+                new Header("Accept", "text/plain"),
+                new Header("accept", "application/json"),
+                new Header("X-Foo", "bar")
+        ), null);
+        RequestView view = RequestView.of(request);
+        assertEquals(Arrays.asList("text/plain", "application/json"), view.headers("ACCEPT"));
+        assertEquals(Collections.singletonList("bar"), view.headers("x-foo"));
+        assertTrue(view.headers("X-Bar").isEmpty());
+    }
+
+    @Test
+    public void testBodyIsBufferedOnce() throws Exception {
+        final AtomicInteger writes = new AtomicInteger();
+        TypedOutput body = new TypedOutput() {
+            @Override public String fileName() { return null; }
+            @Override public String mimeType() { return "text/plain"; }
+            @Override public long length() { return 5; }
+            @Override public void writeTo(OutputStream out) throws IOException {
+                writes.incrementAndGet();
+                out.write("hello".getBytes(StandardCharsets.UTF_8));
+            }
+        };
+        RequestView view = RequestView.of(new Request("POST", "http://localhost/", Collections.<Header>emptyList(), body));
+        assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), view.bodyBytes());
+        assertArrayEquals("hello".getBytes(StandardCharsets.UTF_8), view.bodyBytes());
+        assertEquals("text/plain", view.body().mimeType());
+        assertEquals(1, writes.get());
+        assertNull(RequestView.of(request("http://localhost/")).body());
+    }
+
+    private Request request(final String url) {
+        return new Request("GET", url, Collections.<Header>emptyList(), null);
+    }
+}
@@ -0,0 +1,79 @@
+package retromock.parser;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit.client.Header;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.*;
+
+public class CachedFixtureTest {
+
+    static final String LOCALHOST = "http://localhost";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTemplateIsParsedOnce() throws Exception {
+        Path file = fixture("Hello");
+        CachedFixture fixture = new CachedFixture(file);
+        assertSame(fixture.template(), fixture.template());
+    }
+
+    @Test
+    public void testRenderFillsInPlaceholders() throws Exception {
+        CachedFixture fixture = new CachedFixture(fixture("Hello"));
+        Response response = fixture.render(LOCALHOST);
+        assertEquals(LOCALHOST, response.getUrl());
+        assertEquals(200, response.getStatus());
+        assertEquals("6", header(response, "Content-Length"));
+        assertFalse(header(response, "Date").contains("${DATE}"));
+        assertEquals("Hello\n", new String(((TypedByteArray) response.getBody()).getBytes(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTemplateIsParsedAgainWhenFileChanges() throws Exception {
+        Path file = fixture("Hello");
+        CachedFixture fixture = new CachedFixture(file);
+        ResponseTemplate before = fixture.template();
+
+        write(file, "Hello, World");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 2000));
+
+        ResponseTemplate after = fixture.template();
+        assertNotSame(before, after);
+        assertEquals("13", header(after.render(LOCALHOST), "Content-Length"));
+    }
+
+    private Path fixture(String body) throws IOException {
+        Path file = folder.newFile().toPath();
+        write(file, body);
+        return file;
+    }
+
+    private static void write(Path file, String body) throws IOException {
+        String content = "HTTP/1.1 200 OK\n"
+                + "Date: ${DATE}\n"
+                + "Content-Type: text/plain; charset=UTF-8\n"
+                + "Content-Length: ${LENGTH}\n"
+                + "\n"
+                + body + "\n";
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String header(Response response, String name) {
+        for (Header header : response.getHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) return header.getValue();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,42 @@
+package retromock.parser;
+
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class HttpDateTest {
+
+    @Test
+    public void testFormat() throws Exception {
+        assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpDate.format(784111777000L));
+        assertEquals("Thu, 01 Jan 1970 00:00:00 GMT", HttpDate.format(0L));
+        assertEquals("Wed, 31 Dec 1969 23:59:59 GMT", HttpDate.format(-1L));
+        assertEquals("Tue, 29 Feb 2000 12:00:00 GMT", HttpDate.format(951825600000L));
+    }
+
+    @Test
+    public void testFormatLikeSimpleDateFormat() throws Exception {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long millis = (long) (random.nextDouble() * 4102444800000L);
+            assertEquals(dateFormat.format(new Date(millis)), HttpDate.format(millis));
+        }
+    }
+
+    @Test
+    public void testNowIsCachedPerSecond() throws Exception {
+        String first = HttpDate.now();
+        String second = HttpDate.now();
+        if (first.equals(second)) {
+            assertSame(first, second);
+        }
+    }
+}
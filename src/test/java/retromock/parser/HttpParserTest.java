@@ -4,17 +4,25 @@ import com.google.gson.Gson;
 import org.junit.Before;
 import org.junit.Test;
 import retrofit.client.Header;
+import retrofit.client.Request;
 import retrofit.client.Response;
 import retrofit.mime.TypedByteArray;
 import retromock.test.FileLocator;
 import retromock.test.Http200ResponseBean;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 import static retromock.matchers.IsRegex.matchesRegex;
@@ -77,6 +85,161 @@ public class HttpParserTest {
         assertThat(html.replaceAll("\n", ""), matchesRegex(".+(<\\w+>404 .+</\\w+>.*)+"));
     }
 
+    @Test
+    public void testParseBinaryBodyVerbatim() throws Exception {
+        byte[] head = "HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\nContent-Length: ${LENGTH}\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new byte[256];
+        for (int i = 0; i < body.length; i++) {
+            body[i] = (byte) i;
+        }
+        Response response = HttpParser.parse(LOCALHOST, concat(head, body));
+        assertEquals(200, response.getStatus());
+        Map<String, String> headers = headerMap(response.getHeaders());
+        assertEquals("application/octet-stream", headers.get("Content-Type"));
+        assertEquals("256", headers.get("Content-Length"));
+        assertArrayEquals(body, ((TypedByteArray) response.getBody()).getBytes());
+    }
+
+    @Test
+    public void testParseKeepsCrLfInBody() throws Exception {
+        byte[] input = "HTTP/1.1 200 OK\r\n\r\nline 1\r\nline 2".getBytes(StandardCharsets.US_ASCII);
+        Response response = HttpParser.parse(LOCALHOST, input);
+        assertEquals("line 1\r\nline 2", new String(((TypedByteArray) response.getBody()).getBytes(), StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testCompileConvertsCharsetOnRequest() throws Exception {
+        byte[] input = "HTTP/1.1 200 OK\nContent-Type: text/plain; charset=ISO-8859-1\n\n\u00e4\u00f6\u00fc"
+                .getBytes(StandardCharsets.UTF_8);
+        ResponseTemplate verbatim = HttpParser.compile(ByteBuffer.wrap(input));
+        assertEquals(6, verbatim.body().length());
+        ResponseTemplate converted = HttpParser.compile(ByteBuffer.wrap(input), StandardCharsets.UTF_8);
+        assertArrayEquals("\u00e4\u00f6\u00fc".getBytes(StandardCharsets.ISO_8859_1), ((TypedByteArray) converted.body()).getBytes());
+    }
+
+    @Test
+    public void testParseLargeFile() throws Exception {
+        byte[] head = "HTTP/1.1 200 OK\nContent-Length: ${LENGTH}\n\n".getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new byte[1024 * 1024];
+        Arrays.fill(body, (byte) 'x');
+        Path file = Files.createTempFile("http-large-", ".txt");
+        try {
+            Files.write(file, concat(head, body));
+            Response response = HttpParser.parse(LOCALHOST, file);
+            assertEquals(String.valueOf(body.length), headerMap(response.getHeaders()).get("Content-Length"));
+            assertArrayEquals(body, ((TypedByteArray) response.getBody()).getBytes());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCompileStreaming() throws Exception {
+        byte[] head = "HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\nContent-Length: ${LENGTH}\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII);
+        byte[] body = new byte[100 * 1024];
+        new Random(42).nextBytes(body);
+        Path file = Files.createTempFile("http-stream-", ".txt");
+        try {
+            Files.write(file, concat(head, body));
+            ResponseTemplate template = HttpParser.compileStreaming(file);
+            assertTrue(template.body() instanceof TypedFileRegion);
+            Response response = template.render(LOCALHOST);
+            assertEquals(String.valueOf(body.length), headerMap(response.getHeaders()).get("Content-Length"));
+            assertEquals(body.length, response.getBody().length());
+            assertArrayEquals(body, readFully(response.getBody().in()));
+            assertArrayEquals(body, readFully(response.getBody().in()));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testCompileStreamingWithoutBody() throws Exception {
+        ResponseTemplate template = HttpParser.compileStreaming(getFile("http-302-response.txt"));
+        assertEquals(302, template.status());
+        assertEquals(0, template.body().length());
+        assertEquals(-1, template.body().in().read());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParseWithoutStatusLine() throws Exception {
+        HttpParser.parse(LOCALHOST, "Content-Type: text/plain\n\nfoo".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void testRenderRequestPlaceholders() throws Exception {
+        ResponseTemplate template = HttpParser.compile(ByteBuffer.wrap((
+                "HTTP/1.1 200 OK\nContent-Type: application/json; charset=UTF-8\nContent-Length: ${LENGTH}\n"
+                        + "Location: /users/${path.1}\n\n"
+                        + "{\"id\": ${path.1}, \"q\": \"${query.q}\", \"agent\": \"${header.user-agent}\"}")
+                .getBytes(StandardCharsets.UTF_8)));
+        assertFalse(template.isStatic());
+
+        Request request = new Request("GET", LOCALHOST + "/users/42?q=%C3%A4%20b",
+                Arrays.asList(new Header("User-Agent", "test")), null);
+        Response response = template.render(request);
+        String body = new String(readFully(response.getBody().in()), StandardCharsets.UTF_8);
+        assertEquals("{\"id\": 42, \"q\": \"\u00e4 b\", \"agent\": \"test\"}", body);
+        Map<String, String> headers = headerMap(response.getHeaders());
+        assertEquals("/users/42", headers.get("Location"));
+        assertEquals(String.valueOf(body.getBytes(StandardCharsets.UTF_8).length), headers.get("Content-Length"));
+        assertEquals(response.getBody().length(), Long.parseLong(headers.get("Content-Length")));
+    }
+
+    @Test
+    public void testRenderRequestValuesAsUtf8UnlessCharsetIsNamed() throws Exception {
+        Request request = new Request("GET", LOCALHOST + "/?q=%C3%A4", null, null);
+        ResponseTemplate json = HttpParser.compile(ByteBuffer.wrap(
+                "HTTP/1.1 200 OK\nContent-Type: application/json\n\n\"${query.q}\"".getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new byte[] { '"', (byte) 0xc3, (byte) 0xa4, '"' },
+                readFully(json.render(request).getBody().in()));
+
+        ResponseTemplate latin1 = HttpParser.compile(ByteBuffer.wrap(
+                "HTTP/1.1 200 OK\nContent-Type: text/plain; charset=ISO-8859-1\n\n${query.q}"
+                        .getBytes(StandardCharsets.UTF_8)));
+        assertArrayEquals(new byte[] { (byte) 0xe4 }, readFully(latin1.render(request).getBody().in()));
+    }
+
+    @Test
+    public void testRenderMissingAndUnknownPlaceholders() throws Exception {
+        ResponseTemplate template = HttpParser.compile(ByteBuffer.wrap(
+                "HTTP/1.1 200 OK\n\n[${query.missing}|${path.9}|${foo}|${path.id}|${path.}|$${query.a}]"
+                        .getBytes(StandardCharsets.UTF_8)));
+
+        Response response = template.render(new Request("GET", LOCALHOST + "/?a=1", null, null));
+        assertEquals("[||${foo}||${path.}|$1]", new String(readFully(response.getBody().in()), StandardCharsets.UTF_8));
+        Response withoutRequest = template.render(LOCALHOST);
+        assertEquals("[||${foo}||${path.}|$]", new String(readFully(withoutRequest.getBody().in()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testTemplateWithoutRequestPlaceholdersIsStatic() throws Exception {
+        ResponseTemplate template = HttpParser.compile(getFile("http-200-response.txt"));
+        assertTrue(template.isStatic());
+        Response response = template.render(new Request("GET", LOCALHOST, null, null));
+        assertSame(template.body(), response.getBody());
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+            return os.toByteArray();
+        }
+    }
+
+    private static byte[] concat(byte[] a, byte[] b) {
+        byte[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+
     private Map<String, String> headerMap(List<Header> headers) {
         Map<String, String> headerMap = new HashMap<>();
         for (Header header : headers) {
@@ -0,0 +1,183 @@
+package retromock.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import retrofit.client.Header;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retromock.MockClient;
+import retromock.matchers.IsRequestWithBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static retromock.matchers.IsRequestWithBody.textBody;
+
+public class MockServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockClient.Provider routes;
+    private MockServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        routes = MockClient.when()
+                .GET("/hello").thenReturn(text("Hello, World"))
+                .and().when()
+                .POST("/echo").matching(new IsRequestWithBody(textBody(containsString("ping")))).thenReturn(text("pong"));
+        server = MockServer.start(routes.get());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.url() + "/hello").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("text/plain; charset=UTF-8", connection.getContentType());
+        assertEquals(12, connection.getContentLength());
+        assertEquals("Hello, World", new String(readFully(connection.getInputStream()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testPost() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.url() + "/echo").openConnection();
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write("ping".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        assertEquals("pong", new String(readFully(connection.getInputStream()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testMiss() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.url() + "/nothing").openConnection();
+        assertEquals(404, connection.getResponseCode());
+        assertThat(new String(readFully(connection.getErrorStream()), StandardCharsets.UTF_8),
+                containsString("No matching route found"));
+    }
+
+    @Test
+    public void testStreamedFixture() throws Exception {
+        byte[] body = new byte[300 * 1024];
+        new Random(42).nextBytes(body);
+        Path file = folder.newFile("large.http").toPath();
+        Files.write(file, "HTTP/1.1 200 OK\r\nContent-Type: application/octet-stream\r\n\r\n"
+                .getBytes(StandardCharsets.US_ASCII));
+        Files.write(file, body, java.nio.file.StandardOpenOption.APPEND);
+        routes.GET("/large").thenReturn(MockClient.ResponseFactory.streamFromFile(file));
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.url() + "/large").openConnection();
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(body.length, connection.getContentLength());
+        assertArrayEquals(body, readFully(connection.getInputStream()));
+    }
+
+    @Test
+    public void testKeepAliveAndPipelining() throws Exception {
+        try (Socket socket = new Socket(server.address().getAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /hello HTTP/1.1\r\nHost: localhost\r\n\r\n"
+                    + "POST /echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                    + "2\r\npi\r\n2;ext=1\r\nng\r\n0\r\n\r\n"
+                    + "GET /hello HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String responses = new String(readFully(socket.getInputStream()), StandardCharsets.ISO_8859_1);
+            String[] parts = responses.split("HTTP/1\\.1 ");
+            assertEquals(Arrays.toString(parts), 4, parts.length);
+            assertThat(parts[1], containsString("Hello, World"));
+            assertThat(parts[2], containsString("pong"));
+            assertThat(parts[3], containsString("Connection: close"));
+            assertThat(parts[3], containsString("Hello, World"));
+        }
+    }
+
+    @Test
+    public void testMalformedChunkSizes() throws Exception {
+        for (String size : Arrays.asList("-5", "x", "80000000")) {
+            try (Socket socket = new Socket(server.address().getAddress(), server.port())) {
+                OutputStream out = socket.getOutputStream();
+                out.write(("POST /echo HTTP/1.1\r\nHost: localhost\r\nTransfer-Encoding: chunked\r\n\r\n"
+                        + size + "\r\nping\r\n0\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+
+                String response = new String(readFully(socket.getInputStream()), StandardCharsets.ISO_8859_1);
+                assertThat(size, response, containsString("HTTP/1.1 400 Bad Request"));
+            }
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.url() + "/hello").openConnection();
+        assertEquals(200, connection.getResponseCode());
+    }
+
+    @Test
+    public void testRequestValuesCannotSplitResponses() throws Exception {
+        Path file = folder.newFile("echo.http").toPath();
+        Files.write(file, "HTTP/1.1 200 OK\r\nX-Echo: ${query.x}\r\n\r\nok".getBytes(StandardCharsets.US_ASCII));
+        routes.GET("/reflect").thenReturn(MockClient.ResponseFactory.fromFile(file));
+
+        try (Socket socket = new Socket(server.address().getAddress(), server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET /reflect?x=a%0d%0aSet-Cookie:%20y HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String response = new String(readFully(socket.getInputStream()), StandardCharsets.ISO_8859_1);
+            assertThat(response, containsString("\r\nX-Echo: a  Set-Cookie: y\r\n"));
+            assertFalse(response, response.contains("\r\nSet-Cookie"));
+        }
+    }
+
+    @Test
+    public void testHead() throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(server.url() + "/hello").openConnection();
+        routes.aRequest().withMethod("HEAD").withPath("/hello").thenReturn(text("Hello, World"));
+        connection.setRequestMethod("HEAD");
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(12, connection.getContentLength());
+        assertEquals(0, readFully(connection.getInputStream()).length);
+    }
+
+    private static Response text(String body) {
+        return new Response("", 200, "OK", Collections.<Header>emptyList(),
+                new TypedByteArray("text/plain; charset=UTF-8", body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        try (InputStream is = in) {
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+            return os.toByteArray();
+        }
+    }
+}